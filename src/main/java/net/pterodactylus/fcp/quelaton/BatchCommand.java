@@ -0,0 +1,18 @@
+package net.pterodactylus.fcp.quelaton;
+
+import java.util.List;
+
+/**
+ * Executes a number of commands at once. All commands are sent before any
+ * reply is awaited, so their messages are written to the connection back to
+ * back and the whole batch takes about one round trip instead of one per
+ * command. The results are collected into a single list, in the order in which
+ * the commands were added.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public interface BatchCommand<R> extends Executable<List<R>> {
+
+	BatchCommand<R> add(Executable<? extends R> command);
+
+}
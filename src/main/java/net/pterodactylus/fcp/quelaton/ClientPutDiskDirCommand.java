@@ -2,6 +2,7 @@ package net.pterodactylus.fcp.quelaton;
 
 import java.io.File;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import net.pterodactylus.fcp.Key;
@@ -15,6 +16,7 @@ import net.pterodactylus.fcp.RequestProgress;
 public interface ClientPutDiskDirCommand {
 
 	ClientPutDiskDirCommand onProgress(Consumer<RequestProgress> requestProgressConsumer);
+	ClientPutDiskDirCommand progressInterval(long interval, TimeUnit unit);
 	ClientPutDiskDirCommand onKeyGenerated(Consumer<String> keyGenerated);
 
 	WithUri fromDirectory(File directory);
@@ -1,18 +1,20 @@
 package net.pterodactylus.fcp.quelaton;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import net.pterodactylus.fcp.ClientPutDiskDir;
+import net.pterodactylus.fcp.FcpMessage;
 import net.pterodactylus.fcp.Key;
 import net.pterodactylus.fcp.ProtocolError;
 import net.pterodactylus.fcp.PutSuccessful;
@@ -21,8 +23,7 @@ import net.pterodactylus.fcp.SimpleProgress;
 import net.pterodactylus.fcp.URIGenerated;
 import net.pterodactylus.fcp.Verbosity;
 
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Default {@link ClientPutDiskDirCommand} implemented based on {@link FcpDialog}.
@@ -31,16 +32,17 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class ClientPutDiskDirCommandImpl implements ClientPutDiskDirCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
 	private final Supplier<String> identifierGenerator;
 	private final AtomicReference<String> directory = new AtomicReference<>();
 	private final AtomicReference<String> uri = new AtomicReference<>();
 	private final List<Consumer<RequestProgress>> requestProgressConsumers = new CopyOnWriteArrayList<>();
 	private final List<Consumer<String>> keyGeneratedConsumers = new CopyOnWriteArrayList<>();
+	private final AtomicLong progressInterval = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
 
 	public ClientPutDiskDirCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
 		this.identifierGenerator = identifierGenerator;
 	}
@@ -51,6 +53,12 @@ public class ClientPutDiskDirCommandImpl implements ClientPutDiskDirCommand {
 		return this;
 	}
 
+	@Override
+	public ClientPutDiskDirCommand progressInterval(long interval, TimeUnit unit) {
+		progressInterval.set(unit.toNanos(interval));
+		return this;
+	}
+
 	@Override
 	public ClientPutDiskDirCommand onKeyGenerated(Consumer<String> keyGenerated) {
 		keyGeneratedConsumers.add(Objects.requireNonNull(keyGenerated));
@@ -65,43 +73,45 @@ public class ClientPutDiskDirCommandImpl implements ClientPutDiskDirCommand {
 
 	public Executable<Optional<Key>> uri(String uri) {
 		this.uri.set(Objects.requireNonNull(uri));
-		return () -> threadPool.submit(this::execute);
+		return this::execute;
 	}
 
-	private Optional<Key> execute() throws IOException, ExecutionException, InterruptedException {
+	private ListenableFuture<Optional<Key>> execute() {
 		ClientPutDiskDir clientPutDiskDir = new ClientPutDiskDir(uri.get(), identifierGenerator.get(), directory.get());
 		if (!requestProgressConsumers.isEmpty()) {
 			clientPutDiskDir.setVerbosity(Verbosity.PROGRESS);
 		}
-		try (ClientPutDiskDirDialog clientPutDiskDirDialog = new ClientPutDiskDirDialog()) {
-			return clientPutDiskDirDialog.send(clientPutDiskDir).get();
-		}
+		return new ClientPutDiskDirDialog(new File(directory.get()).getAbsolutePath()).send(clientPutDiskDir);
 	}
 
 	private class ClientPutDiskDirDialog extends FcpDialog<Optional<Key>> {
 
-		public ClientPutDiskDirDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), Optional.<Key>empty());
+		private final String absoluteDirectory;
+		private final AtomicReference<FcpMessage> originalClientPutDiskDir = new AtomicReference<>();
+		private final AtomicBoolean ddaNegotiated = new AtomicBoolean();
+		private final ProgressThrottle progressThrottle = new ProgressThrottle(threadPool, progressInterval.get(), TimeUnit.NANOSECONDS,
+				requestProgress -> requestProgressConsumers.forEach(consumer -> consumer.accept(requestProgress)));
+
+		public ClientPutDiskDirDialog(String absoluteDirectory) {
+			super(threadPool, connectionSupplier, Optional.<Key>empty());
+			this.absoluteDirectory = absoluteDirectory;
+		}
+
+		@Override
+		public ListenableFuture<Optional<Key>> send(FcpMessage fcpMessage) {
+			originalClientPutDiskDir.set(fcpMessage);
+			return super.send(fcpMessage);
 		}
 
 		@Override
 		protected void consumePutSuccessful(PutSuccessful putSuccessful) {
+			progressThrottle.flush();
 			setResult(Optional.of(new Key(putSuccessful.getURI())));
 		}
 
 		@Override
 		protected void consumeSimpleProgress(SimpleProgress simpleProgress) {
-			RequestProgress requestProgress = new RequestProgress(
-				simpleProgress.getTotal(),
-				simpleProgress.getRequired(),
-				simpleProgress.getFailed(),
-				simpleProgress.getFatallyFailed(),
-				simpleProgress.getLastProgress(),
-				simpleProgress.getSucceeded(),
-				simpleProgress.isFinalizedTotal(),
-				simpleProgress.getMinSuccessFetchBlocks()
-			);
-			requestProgressConsumers.stream().forEach(consumer -> consumer.accept(requestProgress));
+			progressThrottle.offer(simpleProgress);
 		}
 
 		@Override
@@ -111,7 +121,12 @@ public class ClientPutDiskDirCommandImpl implements ClientPutDiskDirCommand {
 
 		@Override
 		protected void consumeProtocolError(ProtocolError protocolError) {
-			finish();
+			if ((protocolError.getCode() == 25) && !ddaNegotiated.getAndSet(true)) {
+				resendWithDirectDiskAccess(originalClientPutDiskDir.get(), absoluteDirectory, true, false, this::finish);
+			} else {
+				progressThrottle.flush();
+				finish();
+			}
 		}
 
 	}
@@ -3,16 +3,44 @@ package net.pterodactylus.fcp.quelaton;
 import java.io.IOException;
 import java.util.function.Supplier;
 
-import net.pterodactylus.fcp.FcpConnection;
-
 /**
- * Extension of the {@link Supplier} interfaces that declares an {@link IOException}.
+ * Extension of the {@link Supplier} interfaces that declares an {@link IOException}. It supplies the
+ * {@link FcpMessageRouter} of the connection that dialogs should be registered with.
  *
  * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
  */
 @FunctionalInterface
 interface ConnectionSupplier {
 
-	FcpConnection get() throws IOException;
+	FcpMessageRouter get() throws IOException;
+
+	/**
+	 * Returns the default deadline for the dialogs that use this supplier.
+	 *
+	 * @return The default timeout in milliseconds, or {@code 0} for no timeout
+	 */
+	default long getCommandTimeout() {
+		return 0;
+	}
+
+	/**
+	 * Returns the scheduler that decides when the requests of the dialogs that
+	 * use this supplier are sent.
+	 *
+	 * @return The request scheduler, or {@code null} to send requests at once
+	 */
+	default RequestScheduler getRequestScheduler() {
+		return null;
+	}
+
+	/**
+	 * Returns the tenant that the requests of the dialogs that use this
+	 * supplier are scheduled for.
+	 *
+	 * @return The name of the tenant
+	 */
+	default String getTenant() {
+		return "";
+	}
 
 }
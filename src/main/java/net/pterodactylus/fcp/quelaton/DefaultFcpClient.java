@@ -1,15 +1,24 @@
 package net.pterodactylus.fcp.quelaton;
 
+import static java.util.Arrays.asList;
+
+import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
-import net.pterodactylus.fcp.FcpConnection;
-
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Default {@link FcpClient} implementation.
@@ -18,39 +27,262 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class DefaultFcpClient implements FcpClient {
 
-	private final RandomIdentifierGenerator randomIdentifierGenerator = new RandomIdentifierGenerator();
-	private final ListeningExecutorService threadPool;
+	private static final Set<Class<?>> CACHEABLE_COMMANDS = new HashSet<>(asList(GetNodeCommand.class, GetConfigCommand.class, GetPluginInfoCommand.class));
+
+	private final RandomIdentifierGenerator randomIdentifierGenerator;
+	private final ExecutorService threadPool;
 	private final String hostname;
 	private final int port;
-	private final AtomicReference<FcpConnection> fcpConnection = new AtomicReference<>();
-	private final Supplier<String> clientName;
-	private final ActiveSubscriptions activeSubscriptions = new ActiveSubscriptions(this::unsubscribeUsk);
+	private final FcpConnectionPool connectionPool;
+	private final ActiveSubscriptions activeSubscriptions;
+	private final AtomicLong commandTimeout;
+	private final SingleFlight singleFlight;
+	private final ResultCache resultCache;
+	private final List<DirectoryAccess> authorizedDirectories;
+	private final PeerMirror peerMirror;
+	private final AtomicReference<RequestScheduler> requestScheduler;
+	private final Map<String, Integer> tenantWeights;
+	private final ConnectionSupplier connection;
+	private final ConnectionSupplier primaryConnection;
 
 	public DefaultFcpClient(ExecutorService threadPool, String hostname, int port, Supplier<String> clientName) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+		this(threadPool, hostname, port, clientName, 1);
+	}
+
+	/**
+	 * Creates a new FCP client that spreads its commands over the given number
+	 * of connections.
+	 *
+	 * @param connections The maximum number of connections to open to the node
+	 */
+	public DefaultFcpClient(ExecutorService threadPool, String hostname, int port, Supplier<String> clientName, int connections) {
+		this.randomIdentifierGenerator = new RandomIdentifierGenerator();
+		this.threadPool = threadPool;
 		this.hostname = hostname;
 		this.port = port;
-		this.clientName = clientName;
+		this.connectionPool = new FcpConnectionPool(connections, clientName, this::createConnection, this::connected);
+		this.activeSubscriptions = new ActiveSubscriptions(this::unsubscribeUsk);
+		this.commandTimeout = new AtomicLong();
+		this.singleFlight = new SingleFlight();
+		this.resultCache = new ResultCache();
+		this.authorizedDirectories = new CopyOnWriteArrayList<>();
+		this.peerMirror = new PeerMirror(() -> listPeers().includeMetadata().includeVolatile().execute());
+		this.requestScheduler = new AtomicReference<>();
+		this.tenantWeights = new ConcurrentHashMap<>();
+		this.connection = new ClientConnectionSupplier(false, "");
+		this.primaryConnection = new ClientConnectionSupplier(true, "");
+	}
+
+	/* creates a view of the given client whose requests are scheduled for the given tenant. */
+	private DefaultFcpClient(DefaultFcpClient client, String tenant) {
+		this.randomIdentifierGenerator = client.randomIdentifierGenerator;
+		this.threadPool = client.threadPool;
+		this.hostname = client.hostname;
+		this.port = client.port;
+		this.connectionPool = client.connectionPool;
+		this.activeSubscriptions = client.activeSubscriptions;
+		this.commandTimeout = client.commandTimeout;
+		this.singleFlight = client.singleFlight;
+		this.resultCache = client.resultCache;
+		this.authorizedDirectories = client.authorizedDirectories;
+		this.peerMirror = client.peerMirror;
+		this.requestScheduler = client.requestScheduler;
+		this.tenantWeights = client.tenantWeights;
+		this.connection = new ClientConnectionSupplier(false, tenant);
+		this.primaryConnection = new ClientConnectionSupplier(true, tenant);
+	}
+
+	/**
+	 * Returns the health and load of all connections of this client.
+	 *
+	 * @return The status of all connections, the primary connection first
+	 */
+	public List<ConnectionStatus> getConnectionStatus() {
+		return connectionPool.getStatus();
+	}
+
+	/**
+	 * Sets the default deadline for all commands of this client. Commands that
+	 * have not finished in time fail with a {@link TimeoutException}.
+	 *
+	 * @param timeout The timeout, or {@code 0} to wait forever
+	 * @param unit The unit of the timeout
+	 */
+	public void setCommandTimeout(long timeout, TimeUnit unit) {
+		commandTimeout.set(unit.toMillis(timeout));
+	}
+
+	/**
+	 * Caches the results of the given command type. Results are cached by the
+	 * flags of the command and are invalidated when a command that changes
+	 * them (e.g. {@link #modifyConfig()} or {@link #loadPlugin()}) succeeds.
+	 *
+	 * @param commandType {@link GetNodeCommand}, {@link GetConfigCommand}, or
+	 * {@link GetPluginInfoCommand}
+	 * @param timeToLive The time after which a cached result expires
+	 * @param unit The unit of the time to live
+	 * @param maximumSize The maximum number of cached results for the command
+	 * type
+	 */
+	public void cacheResults(Class<?> commandType, long timeToLive, TimeUnit unit, long maximumSize) {
+		if (!CACHEABLE_COMMANDS.contains(commandType)) {
+			throw new IllegalArgumentException("Results of " + commandType.getSimpleName() + " can not be cached.");
+		}
+		resultCache.enable(commandType, timeToLive, unit, maximumSize);
+	}
+
+	/**
+	 * Stops caching the results of the given command type.
+	 *
+	 * @param commandType The command type
+	 */
+	public void stopCachingResults(Class<?> commandType) {
+		resultCache.disable(commandType);
+	}
+
+	/**
+	 * Keeps a local copy of the peer table of the node. The peers are loaded
+	 * once and then updated from every peer-related message that passes through
+	 * the connections of this client; {@link #listPeer()} answers lookups of
+	 * known peers from the local copy. The copy is resynced with the node in
+	 * the given interval to catch changes that were not made by this client.
+	 *
+	 * @param resyncInterval The interval between resyncs
+	 * @param unit The unit of the interval
+	 * @return A future that is completed once the peers have been loaded
+	 */
+	public ListenableFuture<Void> mirrorPeers(long resyncInterval, TimeUnit unit) {
+		return peerMirror.start(resyncInterval, unit);
 	}
 
-	private FcpConnection connect() throws IOException {
-		FcpConnection fcpConnection = this.fcpConnection.get();
-		if ((fcpConnection != null) && !fcpConnection.isClosed()) {
-			return fcpConnection;
+	/**
+	 * Stops mirroring the peer table of the node.
+	 */
+	public void stopMirroringPeers() {
+		peerMirror.stop();
+	}
+
+	/**
+	 * Negotiates direct disk access to the given directory on every connection
+	 * as soon as the connection has been established, so that requests that
+	 * read from or write to the directory do not have to negotiate it first.
+	 * Connections that are already established are not affected.
+	 *
+	 * @param directory The directory to authorize
+	 * @param read {@code true} to let the node read from the directory
+	 * @param write {@code true} to let the node write to the directory
+	 */
+	public void authorizeDirectory(File directory, boolean read, boolean write) {
+		authorizedDirectories.add(new DirectoryAccess(directory.getAbsolutePath(), read, write));
+	}
+
+	/**
+	 * Limits the number of requests ({@link #clientGet()}, {@link #clientPut()},
+	 * {@link #clientPutDiskDir()}, and {@link #clientPutComplexDir()}) that are
+	 * running on the node at the same time. Waiting requests are sent in the order of their {@link
+	 * net.pterodactylus.fcp.Priority}, and are promoted by one priority class
+	 * for every aging interval they have waited; requests with interactive or
+	 * higher priority are sent at once. Among requests of the same priority,
+	 * the {@link #forTenant(String) tenants} are served in proportion to their
+	 * {@link #setTenantWeight(String, int) weights}.
+	 *
+	 * @param maximumRunning The maximum number of running requests
+	 * @param agingInterval The time after which a waiting request is promoted
+	 * @param unit The unit of the aging interval
+	 */
+	public void scheduleRequests(int maximumRunning, long agingInterval, TimeUnit unit) {
+		scheduleRequests(maximumRunning, agingInterval, unit, false);
+	}
+
+	/**
+	 * Limits the number of running requests like {@link
+	 * #scheduleRequests(int, long, TimeUnit)}. If {@code smallestFirst} is
+	 * {@code true}, the waiting requests of a tenant are sent smallest first,
+	 * using the length of the data to insert or the maximum size of the data
+	 * to retrieve; a request that has waited for an aging interval is sent
+	 * before all newer requests of the tenant, regardless of its size.
+	 *
+	 * @param maximumRunning The maximum number of running requests
+	 * @param agingInterval The time after which a waiting request is promoted
+	 * @param unit The unit of the aging interval
+	 * @param smallestFirst {@code true} to send small requests first
+	 */
+	public void scheduleRequests(int maximumRunning, long agingInterval, TimeUnit unit, boolean smallestFirst) {
+		if (maximumRunning < 1) {
+			throw new IllegalArgumentException("maximumRunning must be positive");
+		}
+		requestScheduler.set(new RequestScheduler(maximumRunning, agingInterval, unit, smallestFirst, tenant -> tenantWeights.getOrDefault(tenant, 1)));
+	}
+
+	/**
+	 * Sends all new requests at once again. Requests that are already waiting
+	 * are still sent by the scheduler.
+	 */
+	public void stopSchedulingRequests() {
+		requestScheduler.set(null);
+	}
+
+	/**
+	 * Sets the share of the running requests that a tenant gets when other
+	 * tenants are waiting, too. Tenants have a weight of 1 by default.
+	 *
+	 * @param tenant The name of the tenant
+	 * @param weight The weight of the tenant
+	 */
+	public void setTenantWeight(String tenant, int weight) {
+		if (weight < 1) {
+			throw new IllegalArgumentException("weight must be positive");
 		}
-		fcpConnection = createConnection();
-		this.fcpConnection.set(fcpConnection);
+		tenantWeights.put(tenant, weight);
+	}
+
+	/**
+	 * Returns a client whose requests are scheduled for the given tenant. The
+	 * returned client shares connections, caches, and settings with this
+	 * client.
+	 *
+	 * @param tenant The name of the tenant
+	 * @return A client for the tenant
+	 */
+	public FcpClient forTenant(String tenant) {
+		return new DefaultFcpClient(this, tenant);
+	}
+
+	private FcpMessageRouter createConnection(String clientName) throws IOException {
 		try {
-			activeSubscriptions.renew(fcpConnection::addFcpListener, this::subscribeUsk);
+			return new ClientHelloImpl(threadPool, hostname, port).withName(clientName).execute().get();
 		} catch (InterruptedException | ExecutionException e) {
 			throw new IOException(e);
 		}
-		return fcpConnection;
 	}
 
-	private FcpConnection createConnection() throws IOException {
+	private void connected(int index, FcpMessageRouter fcpConnection) throws IOException {
+		fcpConnection.addFcpListener(peerMirror);
 		try {
-			return new ClientHelloImpl(threadPool, hostname, port).withName(clientName.get()).execute().get();
+			for (DirectoryAccess directoryAccess : authorizedDirectories) {
+				fcpConnection.getDirectDiskAccess().authorize(threadPool, directoryAccess.directory, directoryAccess.read, directoryAccess.write).get();
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IOException(e);
+		}
+		if (index != 0) {
+			return;
+		}
+		/* the pool only installs the connection once this method returns, so
+		 * the subscriptions have to be renewed on the new connection itself. */
+		ConnectionSupplier newConnection = new ConnectionSupplier() {
+			@Override
+			public FcpMessageRouter get() {
+				return fcpConnection;
+			}
+
+			@Override
+			public long getCommandTimeout() {
+				return commandTimeout.get();
+			}
+		};
+		try {
+			activeSubscriptions.renew(fcpConnection::addFcpListener, () -> new SubscribeUskCommandImpl(threadPool, newConnection, randomIdentifierGenerator::generate, activeSubscriptions));
 		} catch (InterruptedException | ExecutionException e) {
 			throw new IOException(e);
 		}
@@ -58,112 +290,177 @@ public class DefaultFcpClient implements FcpClient {
 
 	@Override
 	public GetNodeCommand getNode() {
-		return new GetNodeCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new GetNodeCommandImpl(threadPool, connection, randomIdentifierGenerator::generate, singleFlight, resultCache);
 	}
 
 	@Override
 	public GetConfigCommand getConfig() {
-		return new GetConfigCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new GetConfigCommandImpl(threadPool, connection, randomIdentifierGenerator::generate, singleFlight, resultCache);
 	}
 
 	@Override
 	public ModifyConfigCommand modifyConfig() {
-		return new ModifyConfigCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new ModifyConfigCommandImpl(threadPool, connection, randomIdentifierGenerator::generate, resultCache);
 	}
 
 	@Override
 	public GenerateKeypairCommand generateKeypair() {
-		return new GenerateKeypairCommandImpl(threadPool, this::connect);
+		return new GenerateKeypairCommandImpl(threadPool, connection);
 	}
 
 	@Override
 	public ClientGetCommand clientGet() {
-		return new ClientGetCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new ClientGetCommandImpl(threadPool, connection, randomIdentifierGenerator::generate);
+	}
+
+	@Override
+	public BulkFetchCommand bulkFetch() {
+		return new BulkFetchCommandImpl(threadPool, this::clientGet);
 	}
 
 	@Override
 	public ClientPutCommand clientPut() {
-		return new ClientPutCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new ClientPutCommandImpl(threadPool, connection, randomIdentifierGenerator::generate);
 	}
 
 	@Override
 	public ClientPutDiskDirCommand clientPutDiskDir() {
-		return new ClientPutDiskDirCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new ClientPutDiskDirCommandImpl(threadPool, connection, randomIdentifierGenerator::generate);
+	}
+
+	@Override
+	public ClientPutComplexDirCommand clientPutComplexDir() {
+		return new ClientPutComplexDirCommandImpl(threadPool, connection, randomIdentifierGenerator::generate);
+	}
+
+	@Override
+	public BulkInsertCommand bulkInsert() {
+		return new BulkInsertCommandImpl(threadPool, this::clientPut);
 	}
 
 	@Override
 	public ListPeerCommand listPeer() {
-		return new ListPeerCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new ListPeerCommandImpl(threadPool, connection, randomIdentifierGenerator::generate, peerMirror);
 	}
 
 	@Override
 	public ListPeersCommand listPeers() {
-		return new ListPeersCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new ListPeersCommandImpl(threadPool, connection, randomIdentifierGenerator::generate, singleFlight);
 	}
 
 	@Override
 	public AddPeerCommand addPeer() {
-		return new AddPeerCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new AddPeerCommandImpl(threadPool, connection, randomIdentifierGenerator::generate);
 	}
 
 	@Override
 	public ModifyPeerCommand modifyPeer() {
-		return new ModifyPeerCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new ModifyPeerCommandImpl(threadPool, connection, randomIdentifierGenerator::generate);
 	}
 
 	@Override
 	public RemovePeerCommand removePeer() {
-		return new RemovePeerCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new RemovePeerCommandImpl(threadPool, connection, randomIdentifierGenerator::generate);
 	}
 
 	@Override
 	public ListPeerNotesCommand listPeerNotes() {
-		return new ListPeerNotesCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new ListPeerNotesCommandImpl(threadPool, connection, randomIdentifierGenerator::generate);
 	}
 
 	@Override
 	public ModifyPeerNoteCommand modifyPeerNote() {
-		return new ModifyPeerNoteCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new ModifyPeerNoteCommandImpl(threadPool, connection, randomIdentifierGenerator::generate);
 	}
 
 	@Override
 	public LoadPluginCommand loadPlugin() {
-		return new LoadPluginCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new LoadPluginCommandImpl(threadPool, connection, randomIdentifierGenerator::generate, resultCache);
 	}
 
 	@Override
 	public ReloadPluginCommand reloadPlugin() {
-		return new ReloadPluginCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new ReloadPluginCommandImpl(threadPool, connection, randomIdentifierGenerator::generate, resultCache);
 	}
 
 	@Override
 	public RemovePluginCommand removePlugin() {
-		return new RemovePluginCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new RemovePluginCommandImpl(threadPool, connection, randomIdentifierGenerator::generate, resultCache);
 	}
 
 	@Override
 	public GetPluginInfoCommand getPluginInfo() {
-		return new GetPluginInfoCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new GetPluginInfoCommandImpl(threadPool, connection, randomIdentifierGenerator::generate, resultCache);
 	}
 
 	@Override
 	public SubscribeUskCommand subscribeUsk() {
-		return new SubscribeUskCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate, activeSubscriptions);
+		return new SubscribeUskCommandImpl(threadPool, primaryConnection, randomIdentifierGenerator::generate, activeSubscriptions);
 	}
 
 	private UnsubscribeUskCommand unsubscribeUsk() {
-		return new UnsubscribeUskCommandImpl(threadPool, this::connect);
+		return new UnsubscribeUskCommandImpl(threadPool, primaryConnection);
 	}
 
 	@Override
 	public FcpPluginMessageCommand fcpPluginMessage() {
-		return new FcpPluginMessageCommandImpl(threadPool, this::connect, randomIdentifierGenerator::generate);
+		return new FcpPluginMessageCommandImpl(threadPool, connection, randomIdentifierGenerator::generate);
 	}
 
 	@Override
 	public WatchFeedsCommand watchFeeds() {
-		return new WatchFeedsCommandImpl(threadPool, this::connect);
+		return new WatchFeedsCommandImpl(threadPool, primaryConnection);
 	}
 
-}
+	@Override
+	public <R> BatchCommand<R> batch() {
+		return new BatchCommandImpl<>();
+	}
+
+	private static class DirectoryAccess {
+
+		private final String directory;
+		private final boolean read;
+		private final boolean write;
+
+		private DirectoryAccess(String directory, boolean read, boolean write) {
+			this.directory = directory;
+			this.read = read;
+			this.write = write;
+		}
 
+	}
+
+	private class ClientConnectionSupplier implements ConnectionSupplier {
+
+		private final boolean primary;
+		private final String tenant;
+
+		private ClientConnectionSupplier(boolean primary, String tenant) {
+			this.primary = primary;
+			this.tenant = tenant;
+		}
+
+		@Override
+		public FcpMessageRouter get() throws IOException {
+			return primary ? connectionPool.primary() : connectionPool.leastLoaded();
+		}
+
+		@Override
+		public long getCommandTimeout() {
+			return commandTimeout.get();
+		}
+
+		@Override
+		public RequestScheduler getRequestScheduler() {
+			return requestScheduler.get();
+		}
+
+		@Override
+		public String getTenant() {
+			return tenant;
+		}
+
+	}
+
+}
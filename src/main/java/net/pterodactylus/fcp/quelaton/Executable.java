@@ -1,5 +1,12 @@
 package net.pterodactylus.fcp.quelaton;
 
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import com.google.common.util.concurrent.ListenableFuture;
 
 /**
@@ -12,4 +19,44 @@ public interface Executable<R> {
 
 	ListenableFuture<R> execute();
 
+	/**
+	 * Returns an executable that fails with a {@link TimeoutException} if this
+	 * command does not finish within the given time. The deadline applies in
+	 * addition to the default command timeout of the client.
+	 *
+	 * @param timeout The maximum time to wait for the command
+	 * @param unit The unit of the timeout
+	 * @return An executable with the given deadline
+	 */
+	default Executable<R> withTimeout(long timeout, TimeUnit unit) {
+		return () -> Deadlines.expire(execute(), timeout, unit);
+	}
+
+	/**
+	 * Executes this command and returns its result as a {@link CompletionStage}.
+	 * The futures created by the commands of a {@link DefaultFcpClient} already
+	 * are completion stages and are returned as they are; other futures are
+	 * adapted.
+	 *
+	 * @return The completion stage of the command
+	 */
+	@SuppressWarnings("unchecked")
+	default CompletionStage<R> executeAsync() {
+		ListenableFuture<R> future = execute();
+		if (future instanceof CompletionStage) {
+			return (CompletionStage<R>) future;
+		}
+		CompletableFuture<R> completableFuture = new CompletableFuture<>();
+		future.addListener(() -> {
+			try {
+				completableFuture.complete(future.get());
+			} catch (ExecutionException e) {
+				completableFuture.completeExceptionally(e.getCause());
+			} catch (InterruptedException | CancellationException e) {
+				completableFuture.completeExceptionally(e);
+			}
+		}, Runnable::run);
+		return completableFuture;
+	}
+
 }
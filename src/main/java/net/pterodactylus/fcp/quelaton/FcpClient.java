@@ -13,8 +13,11 @@ public interface FcpClient {
 
 	GenerateKeypairCommand generateKeypair();
 	ClientGetCommand clientGet();
+	BulkFetchCommand bulkFetch();
 	ClientPutCommand clientPut();
 	ClientPutDiskDirCommand clientPutDiskDir();
+	ClientPutComplexDirCommand clientPutComplexDir();
+	BulkInsertCommand bulkInsert();
 
 	ListPeerCommand listPeer();
 	ListPeersCommand listPeers();
@@ -36,4 +39,6 @@ public interface FcpClient {
 
 	WatchFeedsCommand watchFeeds();
 
+	<R> BatchCommand<R> batch();
+
 }
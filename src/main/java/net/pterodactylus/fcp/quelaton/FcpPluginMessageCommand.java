@@ -1,6 +1,9 @@
 package net.pterodactylus.fcp.quelaton;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 
 /**
  * Command to send messages to other plugins.
@@ -11,6 +14,8 @@ public interface FcpPluginMessageCommand {
 
 	FcpPluginMessageCommand parameter(String name, String value);
 	ForPlugin withData(InputStream dataInputStream, long dataLength);
+	ForPlugin withData(ByteBuffer data);
+	ForPlugin withData(Path dataFile) throws IOException;
 	Executable<Void> forPlugin(String pluginClass);
 
 	interface ForPlugin {
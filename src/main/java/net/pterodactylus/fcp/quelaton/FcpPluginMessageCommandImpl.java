@@ -2,11 +2,13 @@ package net.pterodactylus.fcp.quelaton;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -15,8 +17,6 @@ import java.util.function.Supplier;
 import net.pterodactylus.fcp.FCPPluginMessage;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link FcpPluginMessageCommand} implementation based on {@link FcpDialog}.
@@ -25,7 +25,7 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class FcpPluginMessageCommandImpl implements FcpPluginMessageCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
 	private final Supplier<String> identifierGenerator;
 	private final AtomicReference<String> pluginClass = new AtomicReference<>();
@@ -34,7 +34,7 @@ public class FcpPluginMessageCommandImpl implements FcpPluginMessageCommand {
 	private final AtomicLong dataLength = new AtomicLong();
 
 	public FcpPluginMessageCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
 		this.identifierGenerator = identifierGenerator;
 	}
@@ -52,6 +52,18 @@ public class FcpPluginMessageCommandImpl implements FcpPluginMessageCommand {
 		return this::forPlugin;
 	}
 
+	@Override
+	public ForPlugin withData(ByteBuffer data) {
+		Objects.requireNonNull(data, "data must not be null");
+		return withData(new ByteBufferInputStream(data), data.remaining());
+	}
+
+	@Override
+	public ForPlugin withData(Path dataFile) throws IOException {
+		long dataLength = Files.size(Objects.requireNonNull(dataFile, "dataFile must not be null"));
+		return withData(new PathInputStream(dataFile), dataLength);
+	}
+
 	@Override
 	public Executable<Void> forPlugin(String pluginClass) {
 		this.pluginClass.set(Objects.requireNonNull(pluginClass, "pluginClass must not be null"));
@@ -59,22 +71,16 @@ public class FcpPluginMessageCommandImpl implements FcpPluginMessageCommand {
 	}
 
 	private ListenableFuture<Void> execute() {
-		return threadPool.submit(this::executeDialog);
-	}
-
-	private Void executeDialog() throws IOException, ExecutionException, InterruptedException {
 		FCPPluginMessage fcpPluginMessage = new FCPPluginMessage(identifierGenerator.get(), pluginClass.get());
 		parameters.forEach(fcpPluginMessage::setParameter);
 		Optional.ofNullable(dataInputStream.get()).ifPresent(i -> fcpPluginMessage.setData(i, dataLength.get()));
-		try (FcpPluginMessageDialog fcpPluginMessageDialog = new FcpPluginMessageDialog()) {
-			return fcpPluginMessageDialog.send(fcpPluginMessage).get();
-		}
+		return new FcpPluginMessageDialog().send(fcpPluginMessage);
 	}
 
 	private class FcpPluginMessageDialog extends FcpDialog<Void> {
 
-		public FcpPluginMessageDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), null);
+		public FcpPluginMessageDialog() {
+			super(threadPool, connectionSupplier, null);
 			finish();
 		}
 
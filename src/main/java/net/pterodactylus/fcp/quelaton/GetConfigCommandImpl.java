@@ -1,7 +1,8 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
-import java.util.concurrent.ExecutionException;
+import static java.util.Arrays.asList;
+
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
@@ -10,8 +11,6 @@ import net.pterodactylus.fcp.ConfigData;
 import net.pterodactylus.fcp.GetConfig;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link GetConfigCommand} implementation based on {@link FcpDialog}.
@@ -20,9 +19,11 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class GetConfigCommandImpl implements GetConfigCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
 	private final Supplier<String> identifierGenerator;
+	private final SingleFlight singleFlight;
+	private final ResultCache resultCache;
 	private final AtomicBoolean withCurrent = new AtomicBoolean();
 	private final AtomicBoolean withDefaults = new AtomicBoolean();
 	private final AtomicBoolean withSortOrder = new AtomicBoolean();
@@ -32,10 +33,12 @@ public class GetConfigCommandImpl implements GetConfigCommand {
 	private final AtomicBoolean withLongDescription = new AtomicBoolean();
 	private final AtomicBoolean withDataTypes = new AtomicBoolean();
 
-	public GetConfigCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+	public GetConfigCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator, SingleFlight singleFlight, ResultCache resultCache) {
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
 		this.identifierGenerator = identifierGenerator;
+		this.singleFlight = singleFlight;
+		this.resultCache = resultCache;
 	}
 
 	@Override
@@ -88,28 +91,27 @@ public class GetConfigCommandImpl implements GetConfigCommand {
 
 	@Override
 	public ListenableFuture<ConfigData> execute() {
-		return threadPool.submit(this::executeDialog);
-	}
-
-	private ConfigData executeDialog() throws IOException, ExecutionException, InterruptedException {
-		GetConfig getConfig = new GetConfig(identifierGenerator.get());
-		getConfig.setWithCurrent(withCurrent.get());
-		getConfig.setWithDefaults(withDefaults.get());
-		getConfig.setWithSortOrder(withSortOrder.get());
-		getConfig.setWithExpertFlag(withExpertFlag.get());
-		getConfig.setWithForceWriteFlag(withForceWriteFlag.get());
-		getConfig.setWithShortDescription(withShortDescription.get());
-		getConfig.setWithLongDescription(withLongDescription.get());
-		getConfig.setWithDataTypes(withDataTypes.get());
-		try (GetConfigDialog getConfigDialog = new GetConfigDialog()) {
-			return getConfigDialog.send(getConfig).get();
-		}
+		List<Boolean> flags = asList(withCurrent.get(), withDefaults.get(), withSortOrder.get(), withExpertFlag.get(),
+			withForceWriteFlag.get(), withShortDescription.get(), withLongDescription.get(), withDataTypes.get());
+		List<Object> key = asList("GetConfig", flags);
+		return resultCache.execute(GetConfigCommand.class, key, singleFlight, () -> {
+			GetConfig getConfig = new GetConfig(identifierGenerator.get());
+			getConfig.setWithCurrent(flags.get(0));
+			getConfig.setWithDefaults(flags.get(1));
+			getConfig.setWithSortOrder(flags.get(2));
+			getConfig.setWithExpertFlag(flags.get(3));
+			getConfig.setWithForceWriteFlag(flags.get(4));
+			getConfig.setWithShortDescription(flags.get(5));
+			getConfig.setWithLongDescription(flags.get(6));
+			getConfig.setWithDataTypes(flags.get(7));
+			return new GetConfigDialog().send(getConfig);
+		});
 	}
 
 	private class GetConfigDialog extends FcpDialog<ConfigData> {
 
-		public GetConfigDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), null);
+		public GetConfigDialog() {
+			super(threadPool, connectionSupplier, null);
 		}
 
 		@Override
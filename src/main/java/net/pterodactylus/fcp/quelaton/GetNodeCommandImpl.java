@@ -1,7 +1,8 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
-import java.util.concurrent.ExecutionException;
+import static java.util.Arrays.asList;
+
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
@@ -10,8 +11,6 @@ import net.pterodactylus.fcp.GetNode;
 import net.pterodactylus.fcp.NodeData;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link GetNodeCommandImpl} implementation based on {@link FcpDialog}.
@@ -20,17 +19,21 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class GetNodeCommandImpl implements GetNodeCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
 	private final Supplier<String> identifierGenerator;
+	private final SingleFlight singleFlight;
+	private final ResultCache resultCache;
 	private final AtomicBoolean giveOpennetRef = new AtomicBoolean(false);
 	private final AtomicBoolean includePrivate = new AtomicBoolean(false);
 	private final AtomicBoolean includeVolatile = new AtomicBoolean(false);
 
-	public GetNodeCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+	public GetNodeCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator, SingleFlight singleFlight, ResultCache resultCache) {
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
 		this.identifierGenerator = identifierGenerator;
+		this.singleFlight = singleFlight;
+		this.resultCache = resultCache;
 	}
 
 	@Override
@@ -53,21 +56,20 @@ public class GetNodeCommandImpl implements GetNodeCommand {
 
 	@Override
 	public ListenableFuture<NodeData> execute() {
-		return threadPool.submit(this::executeDialog);
-	}
-
-	private NodeData executeDialog() throws InterruptedException, ExecutionException, IOException {
-		GetNode getNode = new GetNode(identifierGenerator.get(), giveOpennetRef.get(),
-			includePrivate.get(), includeVolatile.get());
-		try (GetNodeDialog getNodeDialog = new GetNodeDialog()) {
-			return getNodeDialog.send(getNode).get();
-		}
+		boolean giveOpennetRef = this.giveOpennetRef.get();
+		boolean includePrivate = this.includePrivate.get();
+		boolean includeVolatile = this.includeVolatile.get();
+		List<Object> key = asList("GetNode", giveOpennetRef, includePrivate, includeVolatile);
+		return resultCache.execute(GetNodeCommand.class, key, singleFlight, () -> {
+			GetNode getNode = new GetNode(identifierGenerator.get(), giveOpennetRef, includePrivate, includeVolatile);
+			return new GetNodeDialog().send(getNode);
+		});
 	}
 
 	private class GetNodeDialog extends FcpDialog<NodeData> {
 
-		public GetNodeDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), null);
+		public GetNodeDialog() {
+			super(threadPool, connectionSupplier, null);
 		}
 
 		@Override
@@ -1,8 +1,9 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
+import static java.util.Arrays.asList;
+
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
@@ -11,8 +12,6 @@ import net.pterodactylus.fcp.PluginInfo;
 import net.pterodactylus.fcp.ProtocolError;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link GetPluginInfoCommand} implementation based on {@link FcpDialog}.
@@ -21,13 +20,15 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class GetPluginInfoCommandImpl implements GetPluginInfoCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
+	private final ResultCache resultCache;
 	private final GetPluginInfo getPluginInfo;
 
-	public GetPluginInfoCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+	public GetPluginInfoCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator, ResultCache resultCache) {
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
+		this.resultCache = resultCache;
 		getPluginInfo = new GetPluginInfo(identifierGenerator.get());
 	}
 
@@ -44,19 +45,14 @@ public class GetPluginInfoCommandImpl implements GetPluginInfoCommand {
 	}
 
 	private ListenableFuture<Optional<PluginInfo>> execute() {
-		return threadPool.submit(this::executeDialog);
-	}
-
-	private Optional<PluginInfo> executeDialog() throws IOException, ExecutionException, InterruptedException {
-		try (GetPluginInfoDialog getPluginInfoDialog = new GetPluginInfoDialog()) {
-			return getPluginInfoDialog.send(getPluginInfo).get();
-		}
+		List<Object> key = asList("GetPluginInfo", getPluginInfo.getField("PluginName"), getPluginInfo.getField("Detailed"));
+		return resultCache.execute(GetPluginInfoCommand.class, key, () -> new GetPluginInfoDialog().send(getPluginInfo));
 	}
 
 	private class GetPluginInfoDialog extends FcpDialog<Optional<PluginInfo>> {
 
-		public GetPluginInfoDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), Optional.<PluginInfo>empty());
+		public GetPluginInfoDialog() {
+			super(threadPool, connectionSupplier, Optional.<PluginInfo>empty());
 		}
 
 		@Override
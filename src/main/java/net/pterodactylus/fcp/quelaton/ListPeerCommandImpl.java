@@ -1,8 +1,6 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
@@ -12,8 +10,6 @@ import net.pterodactylus.fcp.Peer;
 import net.pterodactylus.fcp.UnknownNodeIdentifier;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link ListPeerCommand} implementation based on {@link FcpDialog}.
@@ -22,15 +18,17 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class ListPeerCommandImpl implements ListPeerCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
 	private final Supplier<String> identifierGenerator;
+	private final PeerMirror peerMirror;
 	private final AtomicReference<String> nodeIdentifier = new AtomicReference<>();
 
-	public ListPeerCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+	public ListPeerCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator, PeerMirror peerMirror) {
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
 		this.identifierGenerator = identifierGenerator;
+		this.peerMirror = peerMirror;
 	}
 
 	@Override
@@ -52,25 +50,25 @@ public class ListPeerCommandImpl implements ListPeerCommand {
 	}
 
 	private ListenableFuture<Optional<Peer>> execute() {
-		return threadPool.submit(this::executeDialog);
-	}
-
-	private Optional<Peer> executeDialog() throws IOException, ExecutionException, InterruptedException {
-		ListPeer listPeer = new ListPeer(identifierGenerator.get(), nodeIdentifier.get());
-		try (ListPeerDialog listPeerDialog = new ListPeerDialog()) {
-			return Optional.ofNullable(listPeerDialog.send(listPeer).get());
+		Peer mirroredPeer = peerMirror.find(nodeIdentifier.get());
+		if (mirroredPeer != null) {
+			CompletableListenableFuture<Optional<Peer>> peer = new CompletableListenableFuture<>();
+			peer.complete(Optional.of(mirroredPeer));
+			return peer;
 		}
+		ListPeer listPeer = new ListPeer(identifierGenerator.get(), nodeIdentifier.get());
+		return new ListPeerDialog().send(listPeer);
 	}
 
-	private class ListPeerDialog extends FcpDialog<Peer> {
+	private class ListPeerDialog extends FcpDialog<Optional<Peer>> {
 
-		public ListPeerDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), null);
+		public ListPeerDialog() {
+			super(threadPool, connectionSupplier, Optional.<Peer>empty());
 		}
 
 		@Override
 		protected void consumePeer(Peer peer) {
-			setResult(peer);
+			setResult(Optional.of(peer));
 		}
 
 		@Override
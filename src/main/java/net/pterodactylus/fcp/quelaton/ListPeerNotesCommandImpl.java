@@ -1,8 +1,6 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
@@ -13,8 +11,6 @@ import net.pterodactylus.fcp.PeerNote;
 import net.pterodactylus.fcp.UnknownNodeIdentifier;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link ListPeerNotesCommand} implementation based on {@link FcpDialog}.
@@ -23,13 +19,13 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class ListPeerNotesCommandImpl implements ListPeerNotesCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
 	private final Supplier<String> identifierGenerator;
 	private final AtomicReference<String> nodeIdentifier = new AtomicReference<>();
 
 	public ListPeerNotesCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
 		this.identifierGenerator = identifierGenerator;
 	}
@@ -53,20 +49,14 @@ public class ListPeerNotesCommandImpl implements ListPeerNotesCommand {
 	}
 
 	private ListenableFuture<Optional<PeerNote>> execute() {
-		return threadPool.submit(this::executeDialog);
-	}
-
-	private Optional<PeerNote> executeDialog() throws IOException, ExecutionException, InterruptedException {
 		ListPeerNotes listPeerNotes = new ListPeerNotes(identifierGenerator.get(), nodeIdentifier.get());
-		try (ListPeerNotesDialog listPeerNotesDialog = new ListPeerNotesDialog()) {
-			return listPeerNotesDialog.send(listPeerNotes).get();
-		}
+		return new ListPeerNotesDialog().send(listPeerNotes);
 	}
 
 	private class ListPeerNotesDialog extends FcpDialog<Optional<PeerNote>> {
 
-		public ListPeerNotesDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), Optional.<PeerNote>empty());
+		public ListPeerNotesDialog() {
+			super(threadPool, connectionSupplier, Optional.<PeerNote>empty());
 		}
 
 		@Override
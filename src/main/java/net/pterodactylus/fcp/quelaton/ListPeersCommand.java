@@ -1,6 +1,7 @@
 package net.pterodactylus.fcp.quelaton;
 
 import java.util.Collection;
+import java.util.function.Consumer;
 
 import net.pterodactylus.fcp.Peer;
 
@@ -14,4 +15,16 @@ public interface ListPeersCommand extends Executable<Collection<Peer>> {
 	ListPeersCommand includeMetadata();
 	ListPeersCommand includeVolatile();
 
+	/**
+	 * Lists the peers without collecting them: every peer is handed to the
+	 * given consumer as soon as it has been received, so the first peer is
+	 * available before the node has sent the complete list. The consumer is
+	 * called on the thread that reads from the connection, so a slow consumer
+	 * also slows down reading from the node.
+	 *
+	 * @param peerConsumer The consumer for the peers
+	 * @return An executable whose result is the number of listed peers
+	 */
+	Executable<Integer> forEach(Consumer<? super Peer> peerConsumer);
+
 }
@@ -1,12 +1,15 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
+import static java.util.Arrays.asList;
+
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.concurrent.ExecutionException;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import net.pterodactylus.fcp.EndListPeers;
@@ -14,8 +17,6 @@ import net.pterodactylus.fcp.ListPeers;
 import net.pterodactylus.fcp.Peer;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link ListPeersCommand} implementation based on {@link FcpDialog}.
@@ -24,16 +25,18 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class ListPeersCommandImpl implements ListPeersCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
 	private final Supplier<String> identifierGenerator;
+	private final SingleFlight singleFlight;
 	private final AtomicBoolean includeMetadata = new AtomicBoolean(false);
 	private final AtomicBoolean includeVolatile = new AtomicBoolean(false);
 
-	public ListPeersCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+	public ListPeersCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator, SingleFlight singleFlight) {
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
 		this.identifierGenerator = identifierGenerator;
+		this.singleFlight = singleFlight;
 	}
 
 	@Override
@@ -50,32 +53,46 @@ public class ListPeersCommandImpl implements ListPeersCommand {
 
 	@Override
 	public ListenableFuture<Collection<Peer>> execute() {
-		return threadPool.submit(this::executeDialog);
+		boolean includeMetadata = this.includeMetadata.get();
+		boolean includeVolatile = this.includeVolatile.get();
+		return singleFlight.execute(asList("ListPeers", includeMetadata, includeVolatile), () -> {
+			ListPeers listPeers = new ListPeers(identifierGenerator.get(), includeMetadata, includeVolatile);
+			List<Peer> peers = new ArrayList<>();
+			return new ListPeersDialog<Collection<Peer>>(Collections.emptyList(), peers::add, () -> peers).send(listPeers);
+		});
 	}
 
-	private Collection<Peer> executeDialog() throws InterruptedException, ExecutionException, IOException {
-		ListPeers listPeers = new ListPeers(identifierGenerator.get(), includeMetadata.get(), includeVolatile.get());
-		try (ListPeersDialog listPeersDialog = new ListPeersDialog()) {
-			return listPeersDialog.send(listPeers).get();
-		}
+	@Override
+	public Executable<Integer> forEach(Consumer<? super Peer> peerConsumer) {
+		return () -> {
+			ListPeers listPeers = new ListPeers(identifierGenerator.get(), includeMetadata.get(), includeVolatile.get());
+			AtomicInteger peerCount = new AtomicInteger();
+			return new ListPeersDialog<>(0, peer -> {
+				peerCount.incrementAndGet();
+				peerConsumer.accept(peer);
+			}, peerCount::get).send(listPeers);
+		};
 	}
 
-	private class ListPeersDialog extends FcpDialog<Collection<Peer>> {
+	private class ListPeersDialog<R> extends FcpDialog<R> {
 
-		private final Collection<Peer> peers = new HashSet<>();
+		private final Consumer<Peer> peerConsumer;
+		private final Supplier<R> result;
 
-		public ListPeersDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), Collections.<Peer>emptyList());
+		public ListPeersDialog(R initialResult, Consumer<Peer> peerConsumer, Supplier<R> result) {
+			super(threadPool, connectionSupplier, initialResult);
+			this.peerConsumer = peerConsumer;
+			this.result = result;
 		}
 
 		@Override
 		protected void consumePeer(Peer peer) {
-			peers.add(peer);
+			peerConsumer.accept(peer);
 		}
 
 		@Override
 		protected void consumeEndListPeers(EndListPeers endListPeers) {
-			setResult(peers);
+			setResult(result.get());
 		}
 
 	}
@@ -1,8 +1,6 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
@@ -13,8 +11,6 @@ import net.pterodactylus.fcp.PluginInfo;
 import net.pterodactylus.fcp.ProtocolError;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link LoadPluginCommand} implementation based on {@link FcpDialog}.
@@ -23,13 +19,15 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class LoadPluginCommandImpl implements LoadPluginCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
+	private final ResultCache resultCache;
 	private final LoadPlugin loadPlugin;
 
-	public LoadPluginCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+	public LoadPluginCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator, ResultCache resultCache) {
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
+		this.resultCache = resultCache;
 		loadPlugin = new LoadPlugin(identifierGenerator.get());
 	}
 
@@ -77,19 +75,13 @@ public class LoadPluginCommandImpl implements LoadPluginCommand {
 	}
 
 	private ListenableFuture<Optional<PluginInfo>> execute() {
-		return threadPool.submit(this::executeDialog);
-	}
-
-	private Optional<PluginInfo> executeDialog() throws IOException, ExecutionException, InterruptedException {
-		try (LoadPluginDialog loadPluginDialog = new LoadPluginDialog()) {
-			return loadPluginDialog.send(loadPlugin).get();
-		}
+		return resultCache.invalidateOnSuccess(new LoadPluginDialog().send(loadPlugin), GetPluginInfoCommand.class);
 	}
 
 	private class LoadPluginDialog extends FcpDialog<Optional<PluginInfo>> {
 
-		public LoadPluginDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), Optional.<PluginInfo>empty());
+		public LoadPluginDialog() {
+			super(threadPool, connectionSupplier, Optional.<PluginInfo>empty());
 		}
 
 		@Override
@@ -1,7 +1,5 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
@@ -9,8 +7,6 @@ import net.pterodactylus.fcp.ConfigData;
 import net.pterodactylus.fcp.ModifyConfig;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link ModifyConfigCommand} implementation based on {@link FcpDialog}.
@@ -19,13 +15,15 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class ModifyConfigCommandImpl implements ModifyConfigCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
+	private final ResultCache resultCache;
 	private final ModifyConfig modifyConfig;
 
-	public ModifyConfigCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+	public ModifyConfigCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator, ResultCache resultCache) {
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
+		this.resultCache = resultCache;
 		modifyConfig = new ModifyConfig(identifierGenerator.get());
 	}
 
@@ -41,19 +39,13 @@ public class ModifyConfigCommandImpl implements ModifyConfigCommand {
 
 	@Override
 	public ListenableFuture<ConfigData> execute() {
-		return threadPool.submit(this::executeDialog);
-	}
-
-	private ConfigData executeDialog() throws IOException, ExecutionException, InterruptedException {
-		try (ModifyConfigDialog modifyConfigDialog = new ModifyConfigDialog()) {
-			return modifyConfigDialog.send(modifyConfig).get();
-		}
+		return resultCache.invalidateOnSuccess(new ModifyConfigDialog().send(modifyConfig), GetConfigCommand.class, GetNodeCommand.class);
 	}
 
 	private class ModifyConfigDialog extends FcpDialog<ConfigData> {
 
-		public ModifyConfigDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), null);
+		public ModifyConfigDialog() {
+			super(threadPool, connectionSupplier, null);
 		}
 
 		@Override
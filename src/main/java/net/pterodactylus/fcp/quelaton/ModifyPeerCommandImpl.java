@@ -1,8 +1,6 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
@@ -12,8 +10,6 @@ import net.pterodactylus.fcp.Peer;
 import net.pterodactylus.fcp.UnknownNodeIdentifier;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link ModifyPeerCommand} implementation based on {@link FcpDialog}.
@@ -22,7 +18,7 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class ModifyPeerCommandImpl implements ModifyPeerCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
 	private final Supplier<String> identifierGenerator;
 	private final AtomicReference<String> nodeIdentifier = new AtomicReference<>();
@@ -33,7 +29,7 @@ public class ModifyPeerCommandImpl implements ModifyPeerCommand {
 	private final AtomicReference<Boolean> ignoreSource = new AtomicReference<>();
 
 	public ModifyPeerCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
 		this.identifierGenerator = identifierGenerator;
 	}
@@ -117,25 +113,19 @@ public class ModifyPeerCommandImpl implements ModifyPeerCommand {
 	}
 
 	private ListenableFuture<Optional<Peer>> execute() {
-		return threadPool.submit(this::executeDialog);
-	}
-
-	private Optional<Peer> executeDialog() throws IOException, ExecutionException, InterruptedException {
 		ModifyPeer modifyPeer = new ModifyPeer(identifierGenerator.get(), nodeIdentifier.get());
 		Optional.ofNullable(enabled.get()).ifPresent(enabled -> modifyPeer.setEnabled(enabled));
 		Optional.ofNullable(allowLocalAddresses.get()).ifPresent(allowed -> modifyPeer.setAllowLocalAddresses(allowed));
 		Optional.ofNullable(burstOnly.get()).ifPresent(burstOnly -> modifyPeer.setBurstOnly(burstOnly));
 		Optional.ofNullable(listenOnly.get()).ifPresent(listenOnly -> modifyPeer.setListenOnly(listenOnly));
 		Optional.ofNullable(ignoreSource.get()).ifPresent(ignoreSource -> modifyPeer.setIgnoreSource(ignoreSource));
-		try (ModifyPeerDialog modifyPeerDialog = new ModifyPeerDialog()) {
-			return modifyPeerDialog.send(modifyPeer).get();
-		}
+		return new ModifyPeerDialog().send(modifyPeer);
 	}
 
 	private class ModifyPeerDialog extends FcpDialog<Optional<Peer>> {
 
-		public ModifyPeerDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), Optional.<Peer>empty());
+		public ModifyPeerDialog() {
+			super(threadPool, connectionSupplier, Optional.<Peer>empty());
 		}
 
 		@Override
@@ -1,8 +1,5 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
@@ -15,8 +12,6 @@ import net.pterodactylus.fcp.UnknownNodeIdentifier;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link ModifyPeerNoteCommand} implementation based on {@link FcpDialog}.
@@ -26,14 +21,14 @@ import com.google.common.util.concurrent.MoreExecutors;
 public class ModifyPeerNoteCommandImpl implements ModifyPeerNoteCommand {
 
 	private static final FreenetBase64 BASE_64 = new FreenetBase64();
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
 	private final Supplier<String> identifierGenerator;
 	private final AtomicReference<String> nodeIdentifier = new AtomicReference<>();
 	private final AtomicReference<String> darknetComment = new AtomicReference<>();
 
 	public ModifyPeerNoteCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
 		this.identifierGenerator = identifierGenerator;
 	}
@@ -66,23 +61,17 @@ public class ModifyPeerNoteCommandImpl implements ModifyPeerNoteCommand {
 		if (darknetComment.get() == null) {
 			return Futures.immediateFuture(false);
 		}
-		return threadPool.submit(this::executeDialog);
-	}
-
-	private Boolean executeDialog() throws IOException, ExecutionException, InterruptedException {
 		ModifyPeerNote modifyPeerNote =
 			new ModifyPeerNote(identifierGenerator.get(), nodeIdentifier.get());
 		modifyPeerNote.setPeerNoteType(PeerNoteType.PRIVATE_DARKNET_COMMENT);
 		modifyPeerNote.setNoteText(darknetComment.get());
-		try (ModifyPeerNoteDialog modifyPeerNoteDialog = new ModifyPeerNoteDialog()) {
-			return modifyPeerNoteDialog.send(modifyPeerNote).get();
-		}
+		return new ModifyPeerNoteDialog().send(modifyPeerNote);
 	}
 
 	private class ModifyPeerNoteDialog extends FcpDialog<Boolean> {
 
-		public ModifyPeerNoteDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), false);
+		public ModifyPeerNoteDialog() {
+			super(threadPool, connectionSupplier, false);
 		}
 
 		@Override
@@ -1,8 +1,6 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
@@ -11,8 +9,6 @@ import net.pterodactylus.fcp.ProtocolError;
 import net.pterodactylus.fcp.ReloadPlugin;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link ReloadPluginCommand} implementation based on {@link FcpDialog}.
@@ -21,13 +17,15 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class ReloadPluginCommandImpl implements ReloadPluginCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
+	private final ResultCache resultCache;
 	private final ReloadPlugin reloadPlugin;
 
-	public ReloadPluginCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+	public ReloadPluginCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator, ResultCache resultCache) {
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
+		this.resultCache = resultCache;
 		reloadPlugin = new ReloadPlugin(identifierGenerator.get());
 	}
 
@@ -56,19 +54,13 @@ public class ReloadPluginCommandImpl implements ReloadPluginCommand {
 	}
 
 	private ListenableFuture<Optional<PluginInfo>> execute() {
-		return threadPool.submit(this::executeDialog);
-	}
-
-	private Optional<PluginInfo> executeDialog() throws IOException, ExecutionException, InterruptedException {
-		try (ReloadPluginDialog reloadPluginDialog = new ReloadPluginDialog()) {
-			return reloadPluginDialog.send(reloadPlugin).get();
-		}
+		return resultCache.invalidateOnSuccess(new ReloadPluginDialog().send(reloadPlugin), GetPluginInfoCommand.class);
 	}
 
 	private class ReloadPluginDialog extends FcpDialog<Optional<PluginInfo>> {
 
-		public ReloadPluginDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), Optional.<PluginInfo>empty());
+		public ReloadPluginDialog() {
+			super(threadPool, connectionSupplier, Optional.<PluginInfo>empty());
 		}
 
 		@Override
@@ -1,7 +1,5 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
@@ -11,8 +9,6 @@ import net.pterodactylus.fcp.RemovePeer;
 import net.pterodactylus.fcp.UnknownNodeIdentifier;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link RemovePeerCommand} implementation based on {@link FcpDialog}.
@@ -21,13 +17,13 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class RemovePeerCommandImpl implements RemovePeerCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
 	private final Supplier<String> identifierGenerator;
 	private final AtomicReference<String> nodeIdentifier = new AtomicReference<>();
 
 	public RemovePeerCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
 		this.identifierGenerator = identifierGenerator;
 	}
@@ -51,20 +47,14 @@ public class RemovePeerCommandImpl implements RemovePeerCommand {
 	}
 
 	private ListenableFuture<Boolean> execute() {
-		return threadPool.submit(this::executeDialog);
-	}
-
-	private boolean executeDialog() throws IOException, ExecutionException, InterruptedException {
 		RemovePeer removePeer = new RemovePeer(identifierGenerator.get(), nodeIdentifier.get());
-		try (RemovePeerDialog removePeerDialog = new RemovePeerDialog()) {
-			return removePeerDialog.send(removePeer).get();
-		}
+		return new RemovePeerDialog().send(removePeer);
 	}
 
 	private class RemovePeerDialog extends FcpDialog<Boolean> {
 
-		public RemovePeerDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), false);
+		public RemovePeerDialog() {
+			super(threadPool, connectionSupplier, false);
 		}
 
 		@Override
@@ -1,7 +1,5 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
@@ -10,8 +8,6 @@ import net.pterodactylus.fcp.ProtocolError;
 import net.pterodactylus.fcp.RemovePlugin;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link RemovePluginCommand} implementation based on {@link FcpDialog}.
@@ -20,13 +16,15 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class RemovePluginCommandImpl implements RemovePluginCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
+	private final ResultCache resultCache;
 	private final RemovePlugin removePlugin;
 
-	public RemovePluginCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+	public RemovePluginCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator, ResultCache resultCache) {
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
+		this.resultCache = resultCache;
 		removePlugin = new RemovePlugin(identifierGenerator.get());
 	}
 
@@ -49,19 +47,13 @@ public class RemovePluginCommandImpl implements RemovePluginCommand {
 	}
 
 	private ListenableFuture<Boolean> execute() {
-		return threadPool.submit(this::executeDialog);
-	}
-
-	private boolean executeDialog() throws IOException, ExecutionException, InterruptedException {
-		try (RemovePluginDialog removePluginDialog = new RemovePluginDialog()) {
-			return removePluginDialog.send(removePlugin).get();
-		}
+		return resultCache.invalidateOnSuccess(new RemovePluginDialog().send(removePlugin), GetPluginInfoCommand.class);
 	}
 
 	private class RemovePluginDialog extends FcpDialog<Boolean> {
 
-		public RemovePluginDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), false);
+		public RemovePluginDialog() {
+			super(threadPool, connectionSupplier, false);
 		}
 
 		@Override
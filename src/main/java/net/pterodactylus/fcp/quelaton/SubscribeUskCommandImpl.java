@@ -1,8 +1,6 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
 import java.util.Optional;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
@@ -11,8 +9,6 @@ import net.pterodactylus.fcp.SubscribeUSK;
 import net.pterodactylus.fcp.SubscribedUSK;
 
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
 
 /**
  * Default {@link SubscribeUskCommand} implementation based on {@link FcpDialog}.
@@ -21,7 +17,7 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class SubscribeUskCommandImpl implements SubscribeUskCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
 	private final SubscribeUSK subscribeUSK;
 	private final ActiveSubscriptions activeSubscriptions;
@@ -30,7 +26,7 @@ public class SubscribeUskCommandImpl implements SubscribeUskCommand {
 		ExecutorService threadPool, ConnectionSupplier connectionSupplier, Supplier<String> identifierGenerator,
 		ActiveSubscriptions activeSubscriptions) {
 		this.activeSubscriptions = activeSubscriptions;
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
 		subscribeUSK = new SubscribeUSK(identifierGenerator.get());
 	}
@@ -42,28 +38,18 @@ public class SubscribeUskCommandImpl implements SubscribeUskCommand {
 	}
 
 	private ListenableFuture<Optional<UskSubscription>> execute() {
-		return threadPool.submit(this::executeDialog);
+		return new SubscribeUskDialog().send(subscribeUSK);
 	}
 
-	private Optional<UskSubscription> executeDialog() throws IOException, ExecutionException, InterruptedException {
-		try (SubscribeUskDialog subscribeUskDialog = new SubscribeUskDialog()) {
-			if (subscribeUskDialog.send(subscribeUSK).get()) {
-				UskSubscription uskSubscription = activeSubscriptions.createUskSubscription(subscribeUSK);
-				return Optional.of(uskSubscription);
-			}
-			return Optional.empty();
-		}
-	}
-
-	private class SubscribeUskDialog extends FcpDialog<Boolean> {
+	private class SubscribeUskDialog extends FcpDialog<Optional<UskSubscription>> {
 
-		public SubscribeUskDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), false);
+		public SubscribeUskDialog() {
+			super(threadPool, connectionSupplier, Optional.<UskSubscription>empty());
 		}
 
 		@Override
 		protected void consumeSubscribedUSK(SubscribedUSK subscribedUSK) {
-			setResult(true);
+			setResult(Optional.of(activeSubscriptions.createUskSubscription(subscribeUSK)));
 		}
 
 		@Override
@@ -1,13 +1,10 @@
 package net.pterodactylus.fcp.quelaton;
 
-import java.io.IOException;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 
 import net.pterodactylus.fcp.WatchFeeds;
 
-import com.google.common.util.concurrent.ListeningExecutorService;
-import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Default {@link WatchFeedsCommand} implementation based on {@link FcpDialog}.
@@ -16,35 +13,33 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 public class WatchFeedsCommandImpl implements WatchFeedsCommand {
 
-	private final ListeningExecutorService threadPool;
+	private final ExecutorService threadPool;
 	private final ConnectionSupplier connectionSupplier;
 
 	public WatchFeedsCommandImpl(ExecutorService threadPool, ConnectionSupplier connectionSupplier) {
-		this.threadPool = MoreExecutors.listeningDecorator(threadPool);
+		this.threadPool = threadPool;
 		this.connectionSupplier = connectionSupplier;
 	}
 
 	@Override
 	public Executable<Void> enable() {
-		return () -> threadPool.submit(() -> execute(true));
+		return () -> execute(true);
 	}
 
 	@Override
 	public Executable<Void> disable() {
-		return () -> threadPool.submit(() -> execute(false));
+		return () -> execute(false);
 	}
 
-	private Void execute(boolean enabled) throws IOException, ExecutionException, InterruptedException {
+	private ListenableFuture<Void> execute(boolean enabled) {
 		WatchFeeds watchFeeds = new WatchFeeds(enabled);
-		try (WatchFeedsDialog watchFeedsDialog = new WatchFeedsDialog()) {
-			return watchFeedsDialog.send(watchFeeds).get();
-		}
+		return new WatchFeedsDialog().send(watchFeeds);
 	}
 
 	private class WatchFeedsDialog extends FcpDialog<Void> {
 
-		public WatchFeedsDialog() throws IOException {
-			super(threadPool, connectionSupplier.get(), null);
+		public WatchFeedsDialog() {
+			super(threadPool, connectionSupplier, null);
 			finish();
 		}
 
@@ -1,6 +1,5 @@
 package net.pterodactylus.fcp.quelaton
 
-import com.google.common.util.concurrent.*
 import net.pterodactylus.fcp.*
 import java.io.*
 import java.net.*
@@ -13,9 +12,8 @@ import java.util.function.*
  *
  * @author [David ‘Bombe’ Roden](mailto:bombe@freenetproject.org)
  */
-internal class AddPeerCommandImpl(threadPool: ExecutorService, private val connectionSupplier: ConnectionSupplier, private val identifierSupplier: Supplier<String>) : AddPeerCommand {
+internal class AddPeerCommandImpl(private val threadPool: ExecutorService, private val connectionSupplier: ConnectionSupplier, private val identifierSupplier: Supplier<String>) : AddPeerCommand {
 
-	private val threadPool: ListeningExecutorService = MoreExecutors.listeningDecorator(threadPool)
 	private val file = AtomicReference<File>()
 	private val url = AtomicReference<URL>()
 	private val nodeRef = AtomicReference<NodeRef>()
@@ -36,20 +34,13 @@ internal class AddPeerCommandImpl(threadPool: ExecutorService, private val conne
 			}
 
 	private fun execute() =
-			threadPool.submit(this::executeDialog)!!
-
-	private fun executeDialog() =
 			when {
 				file.get() != null -> AddPeer(identifierSupplier.get(), file.get().path)
 				url.get() != null -> AddPeer(identifierSupplier.get(), url.get())
 				else -> AddPeer(identifierSupplier.get(), nodeRef.get())
-			}.let { addPeer ->
-				AddPeerDialog().use { addPeerDialog ->
-					addPeerDialog.send(addPeer).get()
-				}
-			}
+			}.let { addPeer -> AddPeerDialog().send(addPeer) }
 
-	private inner class AddPeerDialog : FcpDialog<Peer?>(threadPool, connectionSupplier.get()) {
+	private inner class AddPeerDialog : FcpDialog<Peer?>(threadPool, connectionSupplier) {
 
 		override fun consumePeer(peer: Peer) {
 			result = peer
@@ -0,0 +1,25 @@
+package net.pterodactylus.fcp.quelaton
+
+import java.util.concurrent.*
+
+/**
+ * Exponential backoff with jitter. The delay after the first failed attempt is
+ * [initialDelay], and it doubles with every further failure up to
+ * [maximumDelay]. The actual delay is picked at random from the upper half of
+ * that range so that clients that failed at the same time do not all retry at
+ * the same time.
+ *
+ * All delays are in milliseconds.
+ */
+internal class Backoff(
+		private val initialDelay: Long = 100,
+		private val maximumDelay: Long = 30_000,
+		private val random: () -> Double = { ThreadLocalRandom.current().nextDouble() }
+) {
+
+	fun delay(failedAttempts: Int): Long {
+		val delay = Math.min(maximumDelay, initialDelay shl Math.min(failedAttempts - 1, 30).coerceAtLeast(0))
+		return delay / 2 + (delay / 2 * random()).toLong()
+	}
+
+}
@@ -0,0 +1,51 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import java.util.concurrent.*
+import java.util.concurrent.atomic.*
+
+/**
+ * Default [BatchCommand] implementation.
+ *
+ * The future of the batch fails as soon as one of the commands fails; the
+ * other commands keep running. Cancelling the future of the batch cancels all
+ * commands that have not finished yet.
+ */
+internal class BatchCommandImpl<R> : BatchCommand<R> {
+
+	private val commands = CopyOnWriteArrayList<Executable<out R>>()
+
+	override fun add(command: Executable<out R>) = apply {
+		commands += command
+	}
+
+	override fun execute(): ListenableFuture<List<R>> {
+		val futures = commands.map { it.execute() }
+		val results = CompletableListenableFuture<List<R>>()
+		val remaining = AtomicInteger(futures.size)
+		futures.forEach { future ->
+			future.addListener(Runnable {
+				try {
+					future.get()
+					if (remaining.decrementAndGet() == 0) {
+						results.complete(futures.map { it.get() })
+					}
+				} catch (e: ExecutionException) {
+					results.completeExceptionally(e.cause)
+				} catch (e: CancellationException) {
+					results.completeExceptionally(e)
+				}
+			}, Executor(Runnable::run))
+		}
+		if (futures.isEmpty()) {
+			results.complete(emptyList())
+		}
+		results.whenComplete { _, _ ->
+			if (results.isCancelled) {
+				futures.forEach { it.cancel(false) }
+			}
+		}
+		return results
+	}
+
+}
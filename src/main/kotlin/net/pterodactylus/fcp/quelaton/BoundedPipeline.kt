@@ -0,0 +1,168 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import java.util.*
+import java.util.concurrent.*
+import java.util.stream.*
+
+/**
+ * Processes the items of an iterator with a bounded number of items in flight
+ * and returns the results as a blocking stream.
+ *
+ * An item is only taken from the iterator when fewer than `maximumInFlight`
+ * items are being processed and fewer than `maximumBuffered` finished
+ * results are waiting to be taken from the stream, so memory stays bounded
+ * however long the input is and however slow the consumer of the stream is.
+ * If `ordered` is set, results are returned in the order of the items, and
+ * finished results that are waiting for an earlier item count against the
+ * same bound; otherwise results are returned as soon as they are finished.
+ *
+ * The iterator is only used by one thread at a time, on the given executor.
+ * Closing the stream cancels all items in flight and discards the results
+ * that have not been taken yet.
+ */
+internal class BoundedPipeline<I, R, O>(
+		private val executor: Executor,
+		private val items: Iterator<I>,
+		private val maximumInFlight: Int,
+		private val maximumBuffered: Int,
+		private val ordered: Boolean,
+		private val process: (I) -> ListenableFuture<R>,
+		private val complete: (I, R?, Throwable?) -> O,
+		private val discard: (O) -> Unit = {}
+) {
+
+	private val results = LinkedBlockingQueue<Any>()
+	private val inFlight = HashMap<Long, ListenableFuture<R>>()
+	private val finished = TreeMap<Long, O>()
+	private var started = 0L
+	private var nextResult = 0L
+	private var buffered = 0
+	private var exhausted = false
+	private var closed = false
+	private var ended = false
+
+	fun start(): Stream<O> {
+		executor.execute(this::fill)
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(ResultIterator(), Spliterator.NONNULL), false)
+				.onClose(this::close)
+	}
+
+	private fun fill() = synchronized(items) {
+		try {
+			while (mayStart()) {
+				if (items.hasNext()) start(items.next()) else synchronized(this) { exhausted = true }
+			}
+		} catch (e: RuntimeException) {
+			synchronized(this) {
+				exhausted = true
+				results.add(Failure(e))
+			}
+		}
+		synchronized(this, this::endIfDone)
+	}
+
+	@Synchronized
+	private fun mayStart() =
+			!closed && !exhausted && (inFlight.size < maximumInFlight) && (buffered < maximumBuffered)
+
+	private fun start(item: I) {
+		val index = synchronized(this) { started++ }
+		val future = process(item)
+		synchronized(this) { inFlight[index] = future }
+		future.addListener(Runnable { finish(index, item, future) }, Executor(Runnable::run))
+	}
+
+	private fun finish(index: Long, item: I, future: ListenableFuture<R>) {
+		val result = try {
+			complete(item, future.get(), null)
+		} catch (e: ExecutionException) {
+			complete(item, null, e.cause)
+		} catch (e: CancellationException) {
+			complete(item, null, e)
+		}
+		synchronized(this) {
+			inFlight.remove(index)
+			if (closed) {
+				discard(result)
+			} else {
+				buffered++
+				finished[index] = result
+				while (finished.isNotEmpty() && (!ordered || (finished.firstKey() == nextResult))) {
+					results.add(finished.pollFirstEntry().value)
+					nextResult++
+				}
+			}
+		}
+		scheduleFill()
+	}
+
+	/* must be called while holding the lock. */
+	private fun endIfDone() {
+		if ((exhausted || closed) && inFlight.isEmpty() && finished.isEmpty() && !ended) {
+			ended = true
+			results.add(End)
+		}
+	}
+
+	private fun scheduleFill() {
+		try {
+			executor.execute(this::fill)
+		} catch (e: RejectedExecutionException) {
+			synchronized(this) {
+				closed = true
+				endIfDone()
+			}
+		}
+	}
+
+	private fun close() {
+		val cancelled = synchronized(this) {
+			closed = true
+			finished.values.forEach(discard)
+			finished.clear()
+			ArrayList<Any>().also { results.drainTo(it) }.forEach {
+				@Suppress("UNCHECKED_CAST")
+				if ((it === End) || (it is Failure)) results.add(it) else discard(it as O)
+			}
+			inFlight.values.toList()
+		}
+		cancelled.forEach { it.cancel(false) }
+		scheduleFill()
+	}
+
+	private fun taken() {
+		synchronized(this) { buffered-- }
+		scheduleFill()
+	}
+
+	private inner class ResultIterator : Iterator<O> {
+
+		private var next: Any? = null
+
+		override fun hasNext(): Boolean {
+			if (next == null) {
+				next = results.take()
+			}
+			(next as? Failure)?.let { next = End; throw it.exception }
+			return next !== End
+		}
+
+		override fun next(): O {
+			if (!hasNext()) {
+				throw NoSuchElementException()
+			}
+			@Suppress("UNCHECKED_CAST")
+			return (next as O).also {
+				next = null
+				taken()
+			}
+		}
+
+	}
+
+	private object End
+
+	private class Failure(val exception: RuntimeException)
+
+}
@@ -0,0 +1,48 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.*
+import net.pterodactylus.fcp.quelaton.ClientGetCommand.*
+import java.util.stream.*
+
+/**
+ * Retrieves a stream of keys from Freenet with a bounded number of requests
+ * in flight. The next key is only taken from the stream when a request has
+ * finished and its result fits into the buffer, so memory stays bounded
+ * however long the stream of keys is.
+ *
+ * The results are returned as a stream, either in the order in which the
+ * requests finish or, if [ordered], in the order of the keys. The stream
+ * blocks until the next result is available; closing it cancels all requests
+ * that are still running and discards all results that have not been taken.
+ * The [input stream][Data.inputStream] of every retrieved item has to be
+ * closed by the caller.
+ */
+interface BulkFetchCommand {
+
+	/** Sets the maximum number of requests in flight, 16 by default. */
+	fun maximumInFlight(maximumInFlight: Int): BulkFetchCommand
+
+	/**
+	 * Sets the maximum number of finished requests whose results have not
+	 * been taken from the stream yet, 16 by default. When returning results
+	 * in order, this is the size of the reorder buffer.
+	 */
+	fun maximumBuffered(maximumBuffered: Int): BulkFetchCommand
+
+	/** Returns the results in the order of the keys. */
+	fun ordered(): BulkFetchCommand
+
+	fun uris(uris: Stream<String>): Executable<Stream<Retrieved>>
+	fun items(items: Stream<Item>): Executable<Stream<Retrieved>>
+
+	/** A key to retrieve, with an optional maximum size and priority. */
+	data class Item @JvmOverloads constructor(val uri: String, val maxSize: Long? = null, val priority: Priority? = null)
+
+	/**
+	 * The result of retrieving an item. If the request failed, [data] is
+	 * `null`, and [failure] holds the exception if the request did not fail
+	 * on the node.
+	 */
+	data class Retrieved(val item: Item, val data: Data?, val failure: Throwable?)
+
+}
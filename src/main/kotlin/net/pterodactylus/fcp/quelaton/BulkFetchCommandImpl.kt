@@ -0,0 +1,48 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.quelaton.BulkFetchCommand.*
+import java.util.concurrent.*
+import java.util.function.*
+import java.util.stream.*
+
+/**
+ * Default [BulkFetchCommand] implementation based on [BoundedPipeline].
+ */
+internal class BulkFetchCommandImpl(private val threadPool: ExecutorService, private val clientGet: Supplier<ClientGetCommand>) : BulkFetchCommand {
+
+	private var maximumInFlight = 16
+	private var maximumBuffered = 16
+	private var ordered = false
+
+	override fun maximumInFlight(maximumInFlight: Int) = apply {
+		require(maximumInFlight > 0) { "maximumInFlight must be positive" }
+		this.maximumInFlight = maximumInFlight
+	}
+
+	override fun maximumBuffered(maximumBuffered: Int) = apply {
+		require(maximumBuffered > 0) { "maximumBuffered must be positive" }
+		this.maximumBuffered = maximumBuffered
+	}
+
+	override fun ordered() = apply {
+		ordered = true
+	}
+
+	override fun uris(uris: Stream<String>) =
+			items(uris.map { Item(it) })
+
+	override fun items(items: Stream<Item>) = Executable {
+		val pipeline = BoundedPipeline(threadPool, items.iterator(), maximumInFlight, maximumBuffered, ordered,
+				this::retrieve,
+				{ item, data, failure -> Retrieved(item, data, failure) },
+				{ retrieved -> retrieved.data?.inputStream?.close() })
+		CompletableListenableFuture<Stream<Retrieved>>().apply { complete(pipeline.start()) }
+	}
+
+	private fun retrieve(item: Item) =
+			clientGet.get().apply {
+				item.maxSize?.let { maxSize(it) }
+				item.priority?.let { priority(it) }
+			}.uri(item.uri).execute()
+
+}
@@ -0,0 +1,74 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.*
+import net.pterodactylus.fcp.quelaton.ClientPutCommand.*
+import java.io.*
+import java.nio.*
+import java.nio.file.*
+import java.util.concurrent.TimeUnit.*
+import java.util.stream.*
+
+/**
+ * Inserts a stream of items into Freenet with a bounded number of inserts in
+ * flight. The next item is only taken from the stream when an insert has
+ * finished, so the items can be produced lazily. Files are read by the node
+ * from its own disk; direct disk access is negotiated once per connection and
+ * directory and then shared by all items.
+ *
+ * The results are returned as a stream, in the order in which the inserts
+ * finish. The stream blocks until the next insert has finished; closing it
+ * cancels all inserts that are still running. Finished results wait in a
+ * buffer of twice the maximum number of inserts in flight; once it is full,
+ * no further inserts are started until results are taken from the stream.
+ */
+interface BulkInsertCommand {
+
+	/** Sets the maximum number of inserts in flight, 16 by default. */
+	fun maximumInFlight(maximumInFlight: Int): BulkInsertCommand
+
+	fun items(items: Stream<Item>): Executable<Stream<Inserted>>
+
+	/** Data to insert, and the URI to insert it under. */
+	class Item private constructor(val uri: String, val size: Long, internal val source: (ClientPutCommand) -> WithUri) {
+
+		override fun toString() = "Item[uri=$uri, size=$size]"
+
+		companion object {
+
+			/** Lets the node insert the given file from its disk. */
+			@JvmStatic
+			fun file(file: File, uri: String) = Item(uri, file.length()) { it.from(file) }
+
+			/** Uploads the content of the given file over the connection. */
+			@JvmStatic
+			@Throws(IOException::class)
+			fun path(path: Path, uri: String) = Item(uri, Files.size(path)) { it.from(path) }
+
+			/** Uploads the remaining content of the given buffer over the connection. */
+			@JvmStatic
+			fun data(buffer: ByteBuffer, uri: String) = Item(uri, buffer.remaining().toLong()) { it.from(buffer) }
+
+		}
+
+	}
+
+	/**
+	 * The result of inserting the item with the given URI and size. If the
+	 * insert failed, [key] is `null`, and [failure] holds the exception if the
+	 * insert did not fail on the node. [throughput] is the throughput of the
+	 * bulk insert so far.
+	 */
+	data class Inserted(val uri: String, val size: Long, val key: Key?, val failure: Throwable?, val throughput: Throughput)
+
+	/** Number and size of the items that have been inserted within the elapsed time. */
+	data class Throughput(val inserted: Long, val failed: Long, val bytes: Long, val elapsedNanos: Long) {
+
+		val itemsPerSecond get() = perSecond(inserted)
+		val bytesPerSecond get() = perSecond(bytes)
+
+		private fun perSecond(count: Long) =
+				if (elapsedNanos > 0) count * SECONDS.toNanos(1).toDouble() / elapsedNanos else 0.0
+
+	}
+
+}
@@ -0,0 +1,58 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.quelaton.BulkInsertCommand.*
+import java.util.concurrent.*
+import java.util.function.*
+import java.util.stream.*
+
+/**
+ * Default [BulkInsertCommand] implementation.
+ *
+ * Inserts are started with [ClientPutCommand]s; as their dialogs do not
+ * occupy a thread while they wait for the node, the thread pool is only used
+ * to take the next items from the stream once inserts have finished. At most
+ * twice as many finished results as inserts in flight are kept until they are
+ * taken from the result stream; the results do not refer to the items, so the
+ * data of an item can be collected as soon as its insert has finished.
+ */
+internal class BulkInsertCommandImpl(private val threadPool: ExecutorService, private val clientPut: Supplier<ClientPutCommand>) : BulkInsertCommand {
+
+	private var maximumInFlight = 16
+
+	override fun maximumInFlight(maximumInFlight: Int) = apply {
+		require(maximumInFlight > 0) { "maximumInFlight must be positive" }
+		this.maximumInFlight = maximumInFlight
+	}
+
+	private val maximumBuffered
+		get() = minOf(maximumInFlight * 2L, Int.MAX_VALUE.toLong()).toInt()
+
+	override fun items(items: Stream<Item>) = Executable {
+		val throughput = ThroughputRecorder()
+		val pipeline = BoundedPipeline(threadPool, items.iterator(), maximumInFlight, maximumBuffered, false,
+				{ item -> item.source(clientPut.get()).uri(item.uri).execute() },
+				{ item, key, failure -> Inserted(item.uri, item.size, key?.orElse(null), failure, throughput.record(item.size, key?.isPresent == true)) })
+		CompletableListenableFuture<Stream<Inserted>>().apply { complete(pipeline.start()) }
+	}
+
+	private class ThroughputRecorder {
+
+		private val startTime = System.nanoTime()
+		private var inserted = 0L
+		private var failed = 0L
+		private var bytes = 0L
+
+		@Synchronized
+		fun record(size: Long, successful: Boolean): Throughput {
+			if (successful) {
+				inserted++
+				bytes += size
+			} else {
+				failed++
+			}
+			return Throughput(inserted, failed, bytes, System.nanoTime() - startTime)
+		}
+
+	}
+
+}
@@ -0,0 +1,31 @@
+package net.pterodactylus.fcp.quelaton
+
+import java.io.*
+import java.nio.*
+
+/**
+ * Input stream that reads the remaining content of a [ByteBuffer]. The buffer
+ * itself is not modified; reads copy straight from the buffer (which may be
+ * direct or memory-mapped) into the caller’s array.
+ */
+internal class ByteBufferInputStream(buffer: ByteBuffer) : InputStream() {
+
+	private val buffer = buffer.slice()
+
+	override fun read(): Int =
+			if (buffer.hasRemaining()) buffer.get().toInt() and 0xff else -1
+
+	override fun read(b: ByteArray, off: Int, len: Int): Int =
+			when {
+				len == 0 -> 0
+				!buffer.hasRemaining() -> -1
+				else -> minOf(len, buffer.remaining()).also { buffer.get(b, off, it) }
+			}
+
+	override fun skip(n: Long): Long =
+			minOf(maxOf(n, 0), buffer.remaining().toLong()).also { buffer.position(buffer.position() + it.toInt()) }
+
+	override fun available() =
+			buffer.remaining()
+
+}
@@ -2,7 +2,9 @@ package net.pterodactylus.fcp.quelaton
 
 import net.pterodactylus.fcp.*
 import java.io.*
-import java.util.function.*
+import java.nio.channels.*
+import java.nio.file.*
+import java.util.concurrent.*
 
 /**
  * Command that retrieves data from Freenet.
@@ -10,6 +12,22 @@ import java.util.function.*
 interface ClientGetCommand {
 
 	fun onRedirect(newUri: (String) -> Unit): ClientGetCommand
+
+	/**
+	 * Reports the progress of the request. Progress messages from the node are
+	 * coalesced so that progress is reported at most once per
+	 * [progress interval][progressInterval], once per second by default.
+	 * Progress is reported on the client’s thread pool; the latest progress is
+	 * always reported, even if the command finishes within the interval.
+	 */
+	fun onProgress(requestProgressConsumer: (RequestProgress) -> Unit): ClientGetCommand
+
+	/**
+	 * Sets the minimum time between two progress reports. An interval of `0`
+	 * reports every progress message.
+	 */
+	fun progressInterval(interval: Long, unit: TimeUnit): ClientGetCommand
+
 	fun ignoreDataStore(): ClientGetCommand
 	fun dataStoreOnly(): ClientGetCommand
 	fun maxSize(maxSize: Long): ClientGetCommand
@@ -17,8 +35,45 @@ interface ClientGetCommand {
 	fun realTime(): ClientGetCommand
 	fun global(): ClientGetCommand
 
+	/**
+	 * Hands the data to the caller while it is still being read from the
+	 * connection instead of buffering it first. The [input stream][Data.inputStream]
+	 * has to be read to its end or closed; until then, no other message can be
+	 * received on the connection. If the client has a command timeout and the
+	 * stream is not read for that long, the rest of the data is discarded and
+	 * reading the stream fails.
+	 */
+	fun streaming(): ClientGetCommand
+
 	fun uri(uri: String): Executable<Data?>
 
+	/**
+	 * Retrieves the data and writes it to the given channel as it is read from
+	 * the connection. The channel is not closed.
+	 */
+	fun uri(uri: String, channel: WritableByteChannel): Executable<Fetched?>
+
+	/**
+	 * Retrieves the data and writes it to the given file as it is read from the
+	 * connection. An existing file is overwritten.
+	 */
+	fun uri(uri: String, file: Path): Executable<Fetched?>
+
+	/**
+	 * Lets the node write the data to the given file itself, so it is not
+	 * transferred over the connection at all. The node has to be able to
+	 * access the file; direct disk access is negotiated with the node if
+	 * necessary.
+	 */
+	fun toFile(file: File): ToFile
+
+	interface ToFile {
+		fun uri(uri: String): Executable<Fetched?>
+	}
+
 	data class Data(val mimeType: String, val inputStream: InputStream, val size: Long)
 
+	/** Describes data that has been written to a sink. */
+	data class Fetched(val mimeType: String, val size: Long)
+
 }
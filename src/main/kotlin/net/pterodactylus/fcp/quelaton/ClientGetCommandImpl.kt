@@ -6,16 +6,20 @@ import net.pterodactylus.fcp.FcpUtils.*
 import net.pterodactylus.fcp.quelaton.ClientGetCommand.*
 import net.pterodactylus.fcp.util.*
 import java.io.*
+import java.nio.*
+import java.nio.channels.*
+import java.nio.file.*
+import java.nio.file.StandardOpenOption.*
 import java.util.concurrent.*
 import java.util.function.*
 
 /**
  * Implementation of the [ClientGetCommand].
  */
-internal class ClientGetCommandImpl(threadPool: ExecutorService, private val connectionSupplier: ConnectionSupplier, private val identifierGenerator: Supplier<String>) : ClientGetCommand {
+internal class ClientGetCommandImpl(private val threadPool: ExecutorService, private val connectionSupplier: ConnectionSupplier, private val identifierGenerator: Supplier<String>) : ClientGetCommand {
 
-	private val threadPool: ListeningExecutorService = MoreExecutors.listeningDecorator(threadPool)
 	private val onRedirects = mutableListOf<(String) -> Unit>()
+	private val onProgresses = mutableListOf<(RequestProgress) -> Unit>()
 
 	private var ignoreDataStore: Boolean = false
 	private var dataStoreOnly: Boolean = false
@@ -23,11 +27,23 @@ internal class ClientGetCommandImpl(threadPool: ExecutorService, private val con
 	private var priority: Priority? = null
 	private var realTime: Boolean = false
 	private var global: Boolean = false
+	private var streaming: Boolean = false
+	private var progressInterval: Long = 1
+	private var progressIntervalUnit: TimeUnit = TimeUnit.SECONDS
 
 	override fun onRedirect(newUri: (String) -> Unit) = apply {
 		onRedirects.add(newUri)
 	}
 
+	override fun onProgress(requestProgressConsumer: (RequestProgress) -> Unit) = apply {
+		onProgresses.add(requestProgressConsumer)
+	}
+
+	override fun progressInterval(interval: Long, unit: TimeUnit) = apply {
+		progressInterval = interval
+		progressIntervalUnit = unit
+	}
+
 	override fun ignoreDataStore() = apply {
 		ignoreDataStore = true
 	}
@@ -52,33 +68,106 @@ internal class ClientGetCommandImpl(threadPool: ExecutorService, private val con
 		global = true
 	}
 
+	override fun streaming() = apply {
+		streaming = true
+	}
+
 	override fun uri(uri: String) =
-			Executable { threadPool.submit<Data?> { execute(uri) } }
+			if (streaming) execute(uri, this::streamData) else execute(uri, this::bufferData)
+
+	override fun uri(uri: String, channel: WritableByteChannel) =
+			execute<Fetched>(uri) { allData, delivery -> delivery.complete(allData.copyTo(channel)) }
+
+	override fun uri(uri: String, file: Path) =
+			execute<Fetched>(uri) { allData, delivery ->
+				delivery.complete(FileChannel.open(file, WRITE, CREATE, TRUNCATE_EXISTING).use { allData.copyTo(it) })
+			}
+
+	override fun toFile(file: File) = object : ToFile {
+		override fun uri(uri: String) =
+				Executable { ClientGetToDiskDialog(file.absoluteFile).send(createClientGetCommand(identifierGenerator.get(), uri, file.absoluteFile)) }
+	}
+
+	private fun <R> execute(uri: String, consumePayload: (AllData, Delivery<R>) -> Unit) =
+			Executable { ClientGetDialog(consumePayload).send(createClientGetCommand(identifierGenerator.get(), uri)) }
+
+	private fun bufferData(allData: AllData, delivery: Delivery<Data>) =
+			delivery.complete(Data(allData.contentType, TempInputStream(allData.payloadInputStream, allData.dataLength), allData.dataLength))
+
+	/* the payload can only be read while the connection’s reader thread is
+	 * inside the listener, so the thread waits until the caller is done. if
+	 * the caller never gets the data (because the request has been cancelled
+	 * or has timed out) or does not read it for a whole command timeout, the
+	 * payload is discarded so that the connection does not stall. */
+	private fun streamData(allData: AllData, delivery: Delivery<Data>) {
+		val payload = PayloadInputStream(allData.payloadInputStream, allData.dataLength)
+		val idleTimeout = connectionSupplier.commandTimeout
+		delivery.complete(Data(allData.contentType, payload, allData.dataLength)) { payload.discard() }
+		payload.awaitRelease(idleTimeout, TimeUnit.MILLISECONDS)
+	}
 
-	private fun execute(uri: String) =
-			ClientGetDialog().use { clientGetDialog ->
-				clientGetDialog.send(createClientGetCommand(identifierGenerator.get(), uri)).get()
+	private fun AllData.copyTo(channel: WritableByteChannel): Fetched {
+		val payload = Channels.newChannel(payloadInputStream)
+		val buffer = ByteBuffer.allocate(65536)
+		var remaining = dataLength
+		while (remaining > 0) {
+			buffer.clear().limit(minOf(buffer.capacity().toLong(), remaining).toInt())
+			if (payload.read(buffer) == -1) {
+				throw EOFException("Connection closed after ${dataLength - remaining} of $dataLength bytes.")
+			}
+			buffer.flip()
+			remaining -= buffer.remaining()
+			while (buffer.hasRemaining()) {
+				channel.write(buffer)
 			}
+		}
+		return Fetched(contentType, dataLength)
+	}
 
-	private fun createClientGetCommand(identifier: String?, uri: String) =
-			ClientGet(uri, identifier, ReturnType.direct).apply {
+	private fun createClientGetCommand(identifier: String?, uri: String, file: File? = null) =
+			ClientGet(uri, identifier, if (file == null) ReturnType.direct else ReturnType.disk).apply {
+				file?.also { setFilename(it.path) }
 				ignoreDataStore.ifTrue { setIgnoreDataStore(true) }
 				dataStoreOnly.ifTrue { setDataStoreOnly(true) }
 				maxSize?.also { setMaxSize(it) }
 				priority?.also { setPriority(it) }
 				realTime.ifTrue { setRealTimeFlag(true) }
 				global.ifTrue { setGlobal(true) }
+				onProgresses.isNotEmpty().ifTrue { setVerbosity(Verbosity.PROGRESS) }
 			}
 
-	private inner class ClientGetDialog : FcpDialog<Data?>(threadPool, connectionSupplier.get()) {
+	private fun createProgressThrottle() =
+			ProgressThrottle(threadPool, progressInterval, progressIntervalUnit, Consumer { requestProgress ->
+				onProgresses.forEach { it(requestProgress) }
+			})
+
+	/* hands the result of a fetch to the future of its dialog. */
+	private interface Delivery<in R> {
+
+		/* if the future is done without the given result, undelivered is run. */
+		fun complete(result: R, undelivered: () -> Unit = {})
+
+	}
+
+	private inner class ClientGetDialog<R>(private val consumePayload: (AllData, Delivery<R>) -> Unit) : FcpDialog<R?>(threadPool, connectionSupplier) {
+
+		private val progressThrottle = createProgressThrottle()
+
+		override fun consumeSimpleProgress(simpleProgress: SimpleProgress) {
+			progressThrottle.offer(simpleProgress)
+		}
 
 		override fun consumeAllData(allData: AllData) {
+			progressThrottle.flush()
 			try {
-				val payload = TempInputStream(allData.payloadInputStream, allData.dataLength)
-				result = Data(allData.contentType, payload, allData.dataLength)
+				consumePayload(allData, object : Delivery<R> {
+					override fun complete(result: R, undelivered: () -> Unit) {
+						whenDone { if (it !== result) undelivered() }
+						this@ClientGetDialog.result = result
+					}
+				})
 			} catch (e: IOException) {
-				// TODO – logging
-				finish()
+				fail(e)
 			}
 		}
 
@@ -86,6 +175,52 @@ internal class ClientGetCommandImpl(threadPool: ExecutorService, private val con
 			if (getFailed.code == 27) {
 				onRedirects.forEach { newUri -> newUri(getFailed.redirectURI) }
 				sendMessage(createClientGetCommand(identifier, getFailed.redirectURI))
+			} else {
+				progressThrottle.flush()
+				finish()
+			}
+		}
+
+	}
+
+	private inner class ClientGetToDiskDialog(private val file: File) : FcpDialog<Fetched?>(threadPool, connectionSupplier) {
+
+		private val directory = file.parent
+		private var originalClientGet by atomic<FcpMessage?>(null)
+		private var ddaNegotiated by atomic(false)
+		private val progressThrottle = createProgressThrottle()
+
+		override fun send(fcpMessage: FcpMessage): ListenableFuture<Fetched?> {
+			originalClientGet = fcpMessage
+			return super.send(fcpMessage)
+		}
+
+		override fun consumeSimpleProgress(simpleProgress: SimpleProgress) {
+			progressThrottle.offer(simpleProgress)
+		}
+
+		override fun consumeDataFound(dataFound: DataFound) {
+			progressThrottle.flush()
+			result = Fetched(dataFound.metadataContentType, dataFound.dataLength)
+		}
+
+		override fun consumeGetFailed(getFailed: GetFailed) {
+			if (getFailed.code == 27) {
+				onRedirects.forEach { newUri -> newUri(getFailed.redirectURI) }
+				originalClientGet = createClientGetCommand(identifier, getFailed.redirectURI, file)
+				sendMessage(originalClientGet!!)
+			} else {
+				progressThrottle.flush()
+				finish()
+			}
+		}
+
+		override fun consumeProtocolError(protocolError: ProtocolError) {
+			if ((protocolError.code == 25) && !ddaNegotiated) {
+				ddaNegotiated = true
+				resendWithDirectDiskAccess(originalClientGet!!, directory, false, true, Runnable {
+					fail(IOException("Node is not allowed to write to $directory."))
+				})
 			} else {
 				finish()
 			}
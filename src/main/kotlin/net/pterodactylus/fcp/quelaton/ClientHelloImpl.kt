@@ -16,23 +16,24 @@ internal class ClientHelloImpl(threadPool: ExecutorService, private val hostname
 	private val threadPool: ListeningExecutorService = MoreExecutors.listeningDecorator(threadPool)
 	private var clientName by atomic<String?>(null)
 
-	fun withName(name: String): Executable<FcpConnection> {
+	fun withName(name: String): Executable<FcpMessageRouter> {
 		clientName = name
 		return Executable { this.execute() }
 	}
 
-	private fun execute(): ListenableFuture<FcpConnection> =
-			threadPool.submit<FcpConnection>(this::establishConnection)
+	private fun execute(): ListenableFuture<FcpMessageRouter> =
+			threadPool.submit<FcpMessageRouter>(this::establishConnection)
 
-	private fun establishConnection(): FcpConnection {
+	private fun establishConnection(): FcpMessageRouter {
 		val connection = FcpConnection(hostname, port)
 		connection.connect()
+		val messageRouter = FcpMessageRouter(connection)
 		val clientHello = ClientHello(clientName, "2.0")
 		var exception: Exception? = null
 		try {
-			ClientHelloDialog(connection).use { clientHelloDialog ->
+			ClientHelloDialog(messageRouter).use { clientHelloDialog ->
 				if (clientHelloDialog.send(clientHello).get()) {
-					return connection
+					return messageRouter
 				}
 			}
 		} catch (e: Exception) {
@@ -42,7 +43,7 @@ internal class ClientHelloImpl(threadPool: ExecutorService, private val hostname
 		throw IOException(String.format("Could not connect to %s:%d.", hostname, port), exception)
 	}
 
-	private inner class ClientHelloDialog(connection: FcpConnection) : FcpDialog<Boolean>(threadPool, connection, false) {
+	private inner class ClientHelloDialog(messageRouter: FcpMessageRouter) : FcpDialog<Boolean>(threadPool, ConnectionSupplier { messageRouter }, false) {
 
 		override fun consumeNodeHello(nodeHello: NodeHello) {
 			result = true
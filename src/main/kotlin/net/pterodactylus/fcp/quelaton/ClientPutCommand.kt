@@ -2,7 +2,11 @@ package net.pterodactylus.fcp.quelaton
 
 import net.pterodactylus.fcp.*
 import java.io.*
+import java.nio.*
+import java.nio.channels.*
+import java.nio.file.*
 import java.util.*
+import java.util.concurrent.*
 import java.util.function.*
 
 /**
@@ -10,13 +14,49 @@ import java.util.function.*
  */
 interface ClientPutCommand {
 
+	/**
+	 * Reports the progress of the insert. Progress messages from the node are
+	 * coalesced so that progress is reported at most once per
+	 * [progress interval][progressInterval], once per second by default.
+	 * Progress is reported on the client’s thread pool; the latest progress is
+	 * always reported, even if the insert finishes within the interval.
+	 */
 	fun onProgress(requestProgressConsumer: Consumer<RequestProgress>): ClientPutCommand
+
+	/**
+	 * Sets the minimum time between two progress reports. An interval of `0`
+	 * reports every progress message.
+	 */
+	fun progressInterval(interval: Long, unit: TimeUnit): ClientPutCommand
+
 	fun onKeyGenerated(keyGenerated: Consumer<String>): ClientPutCommand
 	fun named(targetFilename: String): ClientPutCommand
 	fun redirectTo(uri: String): WithUri
 	fun from(file: File): WithUri
 	fun from(inputStream: InputStream): WithLength
 
+	/**
+	 * Uploads the content of the given file over the connection. Unlike
+	 * [from(File)][from], the node does not need access to the file. The file
+	 * is opened when the command is sent and closed once it has been sent.
+	 */
+	@Throws(IOException::class)
+	fun from(path: Path): WithUri
+
+	/**
+	 * Uploads the remaining content of the given buffer over the connection.
+	 * The buffer is not modified, and it is read straight from its memory, so
+	 * a direct or memory-mapped buffer is never copied to the heap as a whole.
+	 */
+	fun from(buffer: ByteBuffer): WithUri
+
+	/**
+	 * Uploads the content of the given channel, from its current position to
+	 * its end, over the connection. The channel is not closed.
+	 */
+	@Throws(IOException::class)
+	fun from(channel: FileChannel): WithUri
+
 	interface WithLength {
 
 		fun length(length: Long): WithUri
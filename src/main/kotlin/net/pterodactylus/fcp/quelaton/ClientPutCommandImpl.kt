@@ -4,6 +4,8 @@ import com.google.common.util.concurrent.*
 import net.pterodactylus.fcp.*
 import net.pterodactylus.fcp.quelaton.ClientPutCommand.*
 import java.io.*
+import java.nio.*
+import java.nio.channels.*
 import java.nio.file.*
 import java.util.*
 import java.util.concurrent.*
@@ -13,9 +15,8 @@ import java.util.function.*
 /**
  * Default [ClientPutCommand] implemented based on [FcpDialog].
  */
-internal class ClientPutCommandImpl(threadPool: ExecutorService, private val connectionSupplier: ConnectionSupplier, private val identifierGenerator: Supplier<String>) : ClientPutCommand {
+internal class ClientPutCommandImpl(private val threadPool: ExecutorService, private val connectionSupplier: ConnectionSupplier, private val identifierGenerator: Supplier<String>) : ClientPutCommand {
 
-	private val threadPool: ListeningExecutorService = MoreExecutors.listeningDecorator(threadPool)
 	private val redirectUri = AtomicReference<String>()
 	private val file = AtomicReference<File>()
 	private val payload = AtomicReference<InputStream>()
@@ -23,12 +24,18 @@ internal class ClientPutCommandImpl(threadPool: ExecutorService, private val con
 	private val targetFilename = AtomicReference<String>()
 	private val requestProgressConsumers = CopyOnWriteArrayList<Consumer<RequestProgress>>()
 	private val keyGenerateds = CopyOnWriteArrayList<Consumer<String>>()
+	private val progressInterval = AtomicLong(TimeUnit.SECONDS.toNanos(1))
 
 	override fun onProgress(requestProgressConsumer: Consumer<RequestProgress>): ClientPutCommand {
 		requestProgressConsumers.add(Objects.requireNonNull(requestProgressConsumer))
 		return this
 	}
 
+	override fun progressInterval(interval: Long, unit: TimeUnit): ClientPutCommand {
+		progressInterval.set(unit.toNanos(interval))
+		return this
+	}
+
 	override fun onKeyGenerated(keyGenerated: Consumer<String>): ClientPutCommand {
 		keyGenerateds.add(keyGenerated)
 		return this
@@ -63,6 +70,26 @@ internal class ClientPutCommandImpl(threadPool: ExecutorService, private val con
 		}
 	}
 
+	override fun from(path: Path): WithUri {
+		val size = Files.size(Objects.requireNonNull(path, "path must not be null"))
+		payload.set(PathInputStream(path))
+		return length(size)
+	}
+
+	override fun from(buffer: ByteBuffer): WithUri {
+		payload.set(ByteBufferInputStream(Objects.requireNonNull(buffer, "buffer must not be null")))
+		return length(buffer.remaining().toLong())
+	}
+
+	override fun from(channel: FileChannel): WithUri {
+		Objects.requireNonNull(channel, "channel must not be null")
+		/* the stream of Channels closes the channel when it is closed. */
+		payload.set(object : FilterInputStream(Channels.newInputStream(channel)) {
+			override fun close() = Unit
+		})
+		return length(channel.size() - channel.position())
+	}
+
 	private fun length(length: Long): WithUri {
 		this.length.set(length)
 		return object : WithUri {
@@ -71,12 +98,7 @@ internal class ClientPutCommandImpl(threadPool: ExecutorService, private val con
 	}
 
 	internal fun key(uri: String): Executable<Optional<Key>> {
-		return Executable { threadPool.submit<Optional<Key>> { execute(uri) } }
-	}
-
-	private fun execute(uri: String): Optional<Key> {
-		val clientPut = createClientPutCommand(uri, identifierGenerator.get())
-		ClientPutDialog().use { clientPutDialog -> return clientPutDialog.send(clientPut).get() }
+		return Executable { ClientPutDialog().send(createClientPutCommand(uri, identifierGenerator.get())) }
 	}
 
 	private fun createClientPutCommand(uri: String, identifier: String): ClientPut {
@@ -116,10 +138,14 @@ internal class ClientPutCommandImpl(threadPool: ExecutorService, private val con
 		return clientPut
 	}
 
-	private inner class ClientPutDialog : FcpDialog<Optional<Key>>(threadPool, connectionSupplier.get(), Optional.empty()) {
+	private inner class ClientPutDialog : FcpDialog<Optional<Key>>(threadPool, connectionSupplier, Optional.empty()) {
 
 		private val originalClientPut = AtomicReference<FcpMessage>()
 		private val directory = AtomicReference<String>()
+		private val ddaNegotiated = AtomicBoolean()
+		private val progressThrottle = ProgressThrottle(threadPool, progressInterval.get(), TimeUnit.NANOSECONDS, Consumer { requestProgress ->
+			requestProgressConsumers.forEach { consumer -> consumer.accept(requestProgress) }
+		})
 
 		override fun send(fcpMessage: FcpMessage): ListenableFuture<Optional<Key>> {
 			originalClientPut.set(fcpMessage)
@@ -131,17 +157,7 @@ internal class ClientPutCommandImpl(threadPool: ExecutorService, private val con
 		}
 
 		override fun consumeSimpleProgress(simpleProgress: SimpleProgress) {
-			val requestProgress = RequestProgress(
-					simpleProgress.total,
-					simpleProgress.required,
-					simpleProgress.failed,
-					simpleProgress.fatallyFailed,
-					simpleProgress.lastProgress,
-					simpleProgress.succeeded,
-					simpleProgress.isFinalizedTotal,
-					simpleProgress.minSuccessFetchBlocks
-			)
-			requestProgressConsumers.forEach { consumer -> consumer.accept(requestProgress) }
+			progressThrottle.offer(simpleProgress)
 		}
 
 		override fun consumeURIGenerated(uriGenerated: URIGenerated) {
@@ -151,37 +167,24 @@ internal class ClientPutCommandImpl(threadPool: ExecutorService, private val con
 		}
 
 		override fun consumePutSuccessful(putSuccessful: PutSuccessful) {
+			progressThrottle.flush()
 			result = Optional.of(Key(putSuccessful.uri))
 		}
 
 		override fun consumePutFailed(putFailed: PutFailed) {
+			progressThrottle.flush()
 			finish()
 		}
 
 		override fun consumeProtocolError(protocolError: ProtocolError) {
-			if (protocolError.code == 25) {
-				identifier = directory.get()
-				sendMessage(TestDDARequest(directory.get(), true, false))
+			if ((protocolError.code == 25) && (directory.get() != null) && !ddaNegotiated.getAndSet(true)) {
+				resendWithDirectDiskAccess(originalClientPut.get(), directory.get(), true, false, Runnable { finish() })
 			} else {
+				progressThrottle.flush()
 				finish()
 			}
 		}
 
-		override fun consumeTestDDAReply(testDDAReply: TestDDAReply) {
-			try {
-				val readContent = Files.readAllLines(File(testDDAReply.readFilename).toPath())[0]
-				sendMessage(TestDDAResponse(directory.get(), readContent))
-			} catch (e: IOException) {
-				sendMessage(TestDDAResponse(directory.get(), "failed-to-read"))
-			}
-
-		}
-
-		override fun consumeTestDDAComplete(testDDAComplete: TestDDAComplete) {
-			identifier = originalClientPut.get().getField("Identifier")
-			sendMessage(originalClientPut.get())
-		}
-
 	}
 
 }
@@ -0,0 +1,81 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.*
+import java.io.*
+import java.nio.*
+import java.nio.file.*
+import java.util.*
+import java.util.concurrent.*
+import java.util.function.*
+
+/**
+ * FCP command that inserts a number of named files into Freenet as a single
+ * directory, using one request and one manifest. Unlike
+ * [ClientPutDiskDirCommand], the files do not have to be in a directory the
+ * node can read: files can be uploaded over the connection, read by the node
+ * from its disk, or redirect to other keys. All uploaded files are streamed
+ * in the one message, one after the other; files from a [Path] are only
+ * opened while they are being sent.
+ */
+interface ClientPutComplexDirCommand {
+
+	/**
+	 * Reports the progress of the insert. Progress messages from the node are
+	 * coalesced so that progress is reported at most once per
+	 * [progress interval][progressInterval], once per second by default.
+	 */
+	fun onProgress(requestProgressConsumer: Consumer<RequestProgress>): ClientPutComplexDirCommand
+
+	/**
+	 * Sets the minimum time between two progress reports. An interval of `0`
+	 * reports every progress message.
+	 */
+	fun progressInterval(interval: Long, unit: TimeUnit): ClientPutComplexDirCommand
+
+	fun onKeyGenerated(keyGenerated: Consumer<String>): ClientPutComplexDirCommand
+
+	/** Sets the name of the file that is shown when the directory itself is requested. */
+	fun defaultName(defaultName: String): ClientPutComplexDirCommand
+
+	/**
+	 * Adds a file with the given name, which may contain slashes to place the
+	 * file in a subdirectory.
+	 */
+	fun file(name: String): Entry
+
+	fun uri(uri: String): Executable<Optional<Key>>
+
+	/** A named file of the directory, which still needs its content. */
+	interface Entry {
+
+		fun contentType(contentType: String): Entry
+
+		/**
+		 * Uploads the data of the given stream over the connection. A stream
+		 * can only be sent once: if the node first has to be given access to
+		 * files that it should [read from its disk][from], the request can not
+		 * be sent again and fails.
+		 */
+		fun from(inputStream: InputStream): WithLength
+
+		/** Uploads the content of the given file over the connection. */
+		@Throws(IOException::class)
+		fun from(path: Path): ClientPutComplexDirCommand
+
+		/** Uploads the remaining content of the given buffer over the connection. */
+		fun from(buffer: ByteBuffer): ClientPutComplexDirCommand
+
+		/** Lets the node insert the given file from its disk. */
+		fun from(file: File): ClientPutComplexDirCommand
+
+		fun redirectTo(uri: String): ClientPutComplexDirCommand
+
+	}
+
+	interface WithLength {
+
+		fun length(length: Long): ClientPutComplexDirCommand
+
+	}
+
+}
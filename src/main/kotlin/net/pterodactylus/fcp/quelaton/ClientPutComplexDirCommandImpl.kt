@@ -0,0 +1,154 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.*
+import net.pterodactylus.fcp.quelaton.ClientPutComplexDirCommand.*
+import java.io.*
+import java.nio.*
+import java.nio.file.*
+import java.util.*
+import java.util.concurrent.*
+import java.util.concurrent.atomic.*
+import java.util.function.*
+
+/**
+ * Default [ClientPutComplexDirCommand] implemented based on [FcpDialog].
+ */
+internal class ClientPutComplexDirCommandImpl(private val threadPool: ExecutorService, private val connectionSupplier: ConnectionSupplier, private val identifierGenerator: Supplier<String>) : ClientPutComplexDirCommand {
+
+	private val files = CopyOnWriteArrayList<FileSource>()
+	private val defaultName = AtomicReference<String>()
+	private val requestProgressConsumers = CopyOnWriteArrayList<Consumer<RequestProgress>>()
+	private val keyGenerateds = CopyOnWriteArrayList<Consumer<String>>()
+	private val progressInterval = AtomicLong(TimeUnit.SECONDS.toNanos(1))
+
+	override fun onProgress(requestProgressConsumer: Consumer<RequestProgress>): ClientPutComplexDirCommand {
+		requestProgressConsumers.add(Objects.requireNonNull(requestProgressConsumer))
+		return this
+	}
+
+	override fun progressInterval(interval: Long, unit: TimeUnit): ClientPutComplexDirCommand {
+		progressInterval.set(unit.toNanos(interval))
+		return this
+	}
+
+	override fun onKeyGenerated(keyGenerated: Consumer<String>): ClientPutComplexDirCommand {
+		keyGenerateds.add(Objects.requireNonNull(keyGenerated))
+		return this
+	}
+
+	override fun defaultName(defaultName: String): ClientPutComplexDirCommand {
+		this.defaultName.set(Objects.requireNonNull(defaultName, "defaultName must not be null"))
+		return this
+	}
+
+	override fun file(name: String): Entry =
+			EntryImpl(Objects.requireNonNull(name, "name must not be null"))
+
+	override fun uri(uri: String): Executable<Optional<Key>> {
+		Objects.requireNonNull(uri, "uri must not be null")
+		return Executable {
+			val identifier = identifierGenerator.get()
+			ClientPutComplexDirDialog(identifier, uri).send(createClientPutComplexDir(identifier, uri))
+		}
+	}
+
+	private fun createClientPutComplexDir(identifier: String, uri: String): ClientPutComplexDir {
+		val clientPutComplexDir = ClientPutComplexDir(identifier, uri)
+		defaultName.get()?.let(clientPutComplexDir::setDefaultName)
+		if (!requestProgressConsumers.isEmpty()) {
+			clientPutComplexDir.setVerbosity(Verbosity.PROGRESS)
+		}
+		files.forEach { clientPutComplexDir.addFileEntry(it.fileEntry()) }
+		return clientPutComplexDir
+	}
+
+	/* the directories of all files the node reads from its disk. */
+	private fun diskDirectories() =
+			files.mapNotNull(FileSource::directory).distinct()
+
+	private inner class EntryImpl(private val name: String) : Entry {
+
+		private val contentType = AtomicReference<String>()
+
+		override fun contentType(contentType: String): Entry {
+			this.contentType.set(Objects.requireNonNull(contentType, "contentType must not be null"))
+			return this
+		}
+
+		override fun from(inputStream: InputStream): WithLength {
+			Objects.requireNonNull(inputStream, "inputStream must not be null")
+			return object : WithLength {
+				override fun length(length: Long) =
+						add(FileSource(resendable = false) { FileEntry.createDirectFileEntry(name, contentType.get(), length, inputStream) })
+			}
+		}
+
+		override fun from(path: Path): ClientPutComplexDirCommand {
+			val size = Files.size(Objects.requireNonNull(path, "path must not be null"))
+			return add(FileSource { FileEntry.createDirectFileEntry(name, contentType.get(), size, PathInputStream(path)) })
+		}
+
+		override fun from(buffer: ByteBuffer): ClientPutComplexDirCommand {
+			Objects.requireNonNull(buffer, "buffer must not be null")
+			return add(FileSource { FileEntry.createDirectFileEntry(name, contentType.get(), buffer.remaining().toLong(), ByteBufferInputStream(buffer)) })
+		}
+
+		override fun from(file: File): ClientPutComplexDirCommand {
+			val absoluteFile = Objects.requireNonNull(file, "file must not be null").absoluteFile
+			return add(FileSource(directory = absoluteFile.parent) { FileEntry.createDiskFileEntry(name, absoluteFile.path, contentType.get(), absoluteFile.length()) })
+		}
+
+		override fun redirectTo(uri: String): ClientPutComplexDirCommand {
+			Objects.requireNonNull(uri, "uri must not be null")
+			return add(FileSource { FileEntry.createRedirectFileEntry(name, uri) })
+		}
+
+		private fun add(fileSource: FileSource): ClientPutComplexDirCommand {
+			files.add(fileSource)
+			return this@ClientPutComplexDirCommandImpl
+		}
+
+	}
+
+	/* creates the file entry for the message; the data of a resendable entry
+	 * is read from the start every time an entry is created. */
+	private class FileSource(val directory: String? = null, val resendable: Boolean = true, val fileEntry: () -> FileEntry)
+
+	private inner class ClientPutComplexDirDialog(private val requestIdentifier: String, private val requestUri: String) : FcpDialog<Optional<Key>>(threadPool, connectionSupplier, Optional.empty()) {
+
+		private val ddaNegotiated = AtomicBoolean()
+		private val progressThrottle = ProgressThrottle(threadPool, progressInterval.get(), TimeUnit.NANOSECONDS, Consumer { requestProgress ->
+			requestProgressConsumers.forEach { consumer -> consumer.accept(requestProgress) }
+		})
+
+		override fun consumeSimpleProgress(simpleProgress: SimpleProgress) {
+			progressThrottle.offer(simpleProgress)
+		}
+
+		override fun consumeURIGenerated(uriGenerated: URIGenerated) {
+			keyGenerateds.forEach { keyGenerated -> keyGenerated.accept(uriGenerated.uri) }
+		}
+
+		override fun consumePutSuccessful(putSuccessful: PutSuccessful) {
+			progressThrottle.flush()
+			result = Optional.of(Key(putSuccessful.uri))
+		}
+
+		override fun consumePutFailed(putFailed: PutFailed) {
+			progressThrottle.flush()
+			finish()
+		}
+
+		override fun consumeProtocolError(protocolError: ProtocolError) {
+			val directories = diskDirectories()
+			if ((protocolError.code == 25) && directories.isNotEmpty() && files.all(FileSource::resendable) && !ddaNegotiated.getAndSet(true)) {
+				resendWithDirectDiskAccess(createClientPutComplexDir(requestIdentifier, requestUri), directories, true, false, Runnable { finish() })
+			} else {
+				progressThrottle.flush()
+				finish()
+			}
+		}
+
+	}
+
+}
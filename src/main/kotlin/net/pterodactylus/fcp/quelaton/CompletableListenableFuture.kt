@@ -0,0 +1,17 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import java.util.concurrent.*
+
+/**
+ * A [CompletableFuture] that is also a [ListenableFuture], so that the future
+ * of an [FcpDialog] can be handed out both by [Executable.execute] and by
+ * [Executable.executeAsync] without wrapping it.
+ */
+internal class CompletableListenableFuture<R> : CompletableFuture<R>(), ListenableFuture<R> {
+
+	override fun addListener(listener: Runnable, executor: Executor) {
+		whenComplete { _, _ -> executor.execute(listener) }
+	}
+
+}
@@ -0,0 +1,54 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import kotlinx.coroutines.experimental.*
+import net.pterodactylus.fcp.quelaton.ClientGetCommand.*
+import java.util.concurrent.*
+
+/**
+ * Executes this command and suspends until its result is available.
+ *
+ * No thread is blocked while the command is in flight; the coroutine is
+ * resumed from the [FcpDialog] callback that completes the command. Cancelling
+ * the coroutine cancels the command.
+ */
+suspend fun <R> Executable<R>.await(): R = execute().await()
+
+/**
+ * Executes this [ClientGetCommand] and suspends until the data has been
+ * retrieved, returning `null` if the request failed.
+ */
+suspend fun Executable<Data?>.fetch(): Data? = await()
+
+/**
+ * Suspends until this future is done and returns its result.
+ */
+internal suspend fun <R> ListenableFuture<R>.await(): R =
+		if (isDone) {
+			getDone()
+		} else {
+			suspendCancellableCoroutine { continuation ->
+				continuation.invokeOnCompletion {
+					if (continuation.isCancelled) {
+						cancel(false)
+					}
+				}
+				addListener(Runnable {
+					if (!continuation.isActive) {
+						return@Runnable
+					}
+					try {
+						continuation.resume(getDone())
+					} catch (e: Throwable) {
+						continuation.resumeWithException(e)
+					}
+				}, Executor(Runnable::run))
+			}
+		}
+
+private fun <R> ListenableFuture<R>.getDone(): R =
+		try {
+			get()
+		} catch (e: ExecutionException) {
+			throw e.cause ?: e
+		}
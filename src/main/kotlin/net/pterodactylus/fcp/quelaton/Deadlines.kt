@@ -0,0 +1,40 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import java.util.concurrent.*
+
+/**
+ * Enforces deadlines on command futures. A single daemon thread is shared by
+ * all clients; it only fires expired deadlines, and the deadline of a future is
+ * removed as soon as the future is done.
+ */
+internal object Deadlines {
+
+	private val scheduler = ScheduledThreadPoolExecutor(1, ThreadFactory { runnable ->
+		Thread(runnable, "quelaton deadlines").apply { isDaemon = true }
+	}).apply { removeOnCancelPolicy = true }
+
+	/**
+	 * Fails the given future with a [TimeoutException] if it is not done within
+	 * the given time. Futures of [FcpDialog]s are failed directly, which also
+	 * closes their dialog; other futures are cancelled.
+	 *
+	 * @return The given future
+	 */
+	@JvmStatic
+	fun <R> expire(future: ListenableFuture<R>, timeout: Long, unit: TimeUnit): ListenableFuture<R> {
+		if (future.isDone) {
+			return future
+		}
+		val deadline = scheduler.schedule({
+			if (future is CompletableFuture<*>) {
+				future.completeExceptionally(TimeoutException("Command did not finish within $timeout ${unit.name.toLowerCase()}."))
+			} else {
+				future.cancel(false)
+			}
+		}, timeout, unit)
+		future.addListener(Runnable { deadline.cancel(false) }, Executor(Runnable::run))
+		return future
+	}
+
+}
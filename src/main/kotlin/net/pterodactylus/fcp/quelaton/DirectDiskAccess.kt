@@ -0,0 +1,121 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import net.pterodactylus.fcp.*
+import java.io.*
+import java.util.concurrent.*
+
+/**
+ * Registry of the directories that the node has authorized for direct disk
+ * access on one connection. The node remembers the authorization for the
+ * lifetime of the connection, so every directory has to be negotiated only
+ * once per connection: a negotiation that is still running is shared by all
+ * dialogs that need the same access, and a successful one is reused until the
+ * connection is closed.
+ *
+ * The node identifies a negotiation by its directory alone, so negotiations
+ * for the same directory are run one after the other; a negotiation that
+ * waits for another one is skipped if the other one has already allowed the
+ * access it needs.
+ */
+internal class DirectDiskAccess(private val messageRouter: FcpMessageRouter) {
+
+	private val authorizations = ConcurrentHashMap<Access, ListenableFuture<Boolean>>()
+	private val lastNegotiations = HashMap<String, ListenableFuture<Boolean>>()
+
+	/**
+	 * Returns whether the node has allowed the requested access to the given
+	 * directory on this connection.
+	 */
+	fun isAuthorized(directory: String, read: Boolean, write: Boolean) =
+			allowedAuthorization(directory, read, write) != null
+
+	/**
+	 * Negotiates the requested access to the given directory with the node,
+	 * unless it has already been allowed or is being negotiated.
+	 *
+	 * @return A future with the result of the negotiation
+	 */
+	fun authorize(executorService: ExecutorService, directory: String, read: Boolean, write: Boolean): ListenableFuture<Boolean> {
+		val access = Access(directory, read, write)
+		val negotiation = CompletableListenableFuture<Boolean>()
+		val previousNegotiation = synchronized(this) {
+			allowedAuthorization(directory, read, write)?.let { return it }
+			authorizations[access]?.takeUnless(ListenableFuture<Boolean>::isDone)?.let { return it }
+			authorizations[access] = negotiation
+			lastNegotiations.put(directory, negotiation)
+		}
+		negotiation.addListener(Runnable { synchronized(this) { lastNegotiations.remove(directory, negotiation) } }, Executor(Runnable::run))
+		if (previousNegotiation == null) {
+			negotiate(executorService, access, negotiation)
+		} else {
+			previousNegotiation.addListener(Runnable {
+				if (allowedAuthorization(directory, read, write) != null) {
+					negotiation.complete(true)
+				} else {
+					negotiate(executorService, access, negotiation)
+				}
+			}, Executor(Runnable::run))
+		}
+		return negotiation
+	}
+
+	private fun allowedAuthorization(directory: String, read: Boolean, write: Boolean) =
+			authorizations.entries.firstOrNull { (access, authorization) -> access.covers(directory, read, write) && authorization.isAllowed() }?.value
+
+	private fun negotiate(executorService: ExecutorService, access: Access, negotiation: CompletableListenableFuture<Boolean>) {
+		val dialog = TestDdaDialog(executorService, access)
+		val result = dialog.send(TestDDARequest(access.directory, access.read, access.write))
+		result.addListener(Runnable {
+			try {
+				negotiation.complete(result.get())
+			} catch (e: ExecutionException) {
+				negotiation.completeExceptionally(e.cause)
+			} catch (e: CancellationException) {
+				negotiation.cancel(false)
+			}
+		}, Executor(Runnable::run))
+	}
+
+	private fun ListenableFuture<Boolean>.isAllowed() =
+			isDone && !isCancelled && try {
+				get()
+			} catch (e: ExecutionException) {
+				false
+			}
+
+	private data class Access(val directory: String, val read: Boolean, val write: Boolean) {
+
+		fun covers(directory: String, read: Boolean, write: Boolean) =
+				(this.directory == directory) && (this.read || !read) && (this.write || !write)
+
+	}
+
+	private inner class TestDdaDialog(executorService: ExecutorService, private val access: Access) :
+			FcpDialog<Boolean>(executorService, ConnectionSupplier { messageRouter }, false) {
+
+		override fun consumeTestDDAReply(testDDAReply: TestDDAReply) {
+			val readContent = testDDAReply.readFilename?.let { readFilename ->
+				try {
+					File(readFilename).readLines().first()
+				} catch (e: Exception) {
+					"failed-to-read"
+				}
+			}
+			testDDAReply.writeFilename?.let { writeFilename ->
+				try {
+					File(writeFilename).writeText(testDDAReply.contentToWrite)
+				} catch (e: IOException) {
+					/* the node will not allow writing to the directory. */
+				}
+			}
+			sendMessage(TestDDAResponse(access.directory, readContent))
+		}
+
+		override fun consumeTestDDAComplete(testDDAComplete: TestDDAComplete) {
+			result = (!access.read || testDDAComplete.isReadDirectoryAllowed) && (!access.write || testDDAComplete.isWriteDirectoryAllowed)
+		}
+
+	}
+
+}
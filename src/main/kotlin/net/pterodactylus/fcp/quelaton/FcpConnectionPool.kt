@@ -0,0 +1,176 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.util.*
+import java.io.*
+import java.util.concurrent.*
+import java.util.concurrent.atomic.*
+import java.util.function.*
+
+/**
+ * A fixed number of FCP connections to the same node. Every connection does its
+ * own `ClientHello`; if there is more than one connection, each one uses the
+ * supplied client name with its index appended so that the node does not close
+ * them for using a duplicate name.
+ *
+ * Connections are opened lazily. [leastLoaded] returns the connection with the
+ * fewest pending payload bytes and open dialogs, so a large `ClientPut` does not
+ * hold up the requests that are sent after it; a new connection is only opened
+ * when all open connections are busy. Commands whose replies are tied to the
+ * connection they were sent on, such as USK subscriptions, use the [primary]
+ * connection.
+ *
+ * Every connection is opened by a single handshake that concurrent callers
+ * share, and failed handshakes are retried with an exponential [Backoff].
+ */
+internal class FcpConnectionPool @JvmOverloads constructor(
+		private val size: Int,
+		private val baseClientName: Supplier<String>,
+		private val connectionFactory: ConnectionFactory,
+		private val connectionListener: ConnectionListener,
+		private val backoff: Backoff = Backoff(),
+		private val clock: () -> Long = System::nanoTime
+) {
+
+	init {
+		require(size > 0) { "size must be at least 1" }
+	}
+
+	private val slots = (0 until size).map(::Slot)
+	private val byLoad = compareBy<Pair<Slot, FcpMessageRouter?>>({ it.second?.pendingBytes ?: 0L }, { it.second?.inFlightRequests ?: 0 }, { it.second == null }, { it.first.index })
+
+	@Throws(IOException::class)
+	fun primary(): FcpMessageRouter =
+			slots[0].connect()
+
+	/**
+	 * Returns the connection with the least load. Slots that are waiting for
+	 * their backoff delay are skipped, and if opening a new connection fails,
+	 * the least loaded open connection is used instead.
+	 */
+	@Throws(IOException::class)
+	fun leastLoaded(): FcpMessageRouter {
+		val candidates = slots.map { slot -> slot to slot.openConnection }
+		val (slot, connection) = candidates
+				.filter { (candidate, openConnection) -> (openConnection != null) || !candidate.isBackingOff }
+				.minWith(byLoad) ?: return slots[0].connect()
+		return connection ?: try {
+			slot.connect()
+		} catch (e: IOException) {
+			candidates.filter { it.second != null }.minWith(byLoad)?.second ?: throw e
+		}
+	}
+
+	val status: List<ConnectionStatus>
+		get() = slots.map { slot ->
+			val connection = slot.openConnection
+			ConnectionStatus(slot.clientName, connection != null, connection?.inFlightRequests ?: 0, connection?.pendingBytes ?: 0L)
+		}
+
+	/**
+	 * A single connection of the pool. Connecting is single-flight: while a
+	 * connection attempt is in progress, all other callers wait for its result
+	 * instead of starting their own `ClientHello`. After a failed attempt, callers
+	 * fail with the same error until the [backoff] delay has passed.
+	 */
+	private inner class Slot(val index: Int) {
+
+		private val connection = AtomicReference<FcpMessageRouter?>()
+		private val connectAttempt = AtomicReference<CompletableFuture<FcpMessageRouter>?>()
+		private var failedAttempts by atomic(0)
+		private var nextAttempt by atomic(0L)
+		private var lastFailure by atomic<IOException?>(null)
+		var clientName by atomic<String?>(null)
+			private set
+
+		val openConnection get() = connection.get()?.takeUnless(FcpMessageRouter::isClosed)
+
+		/** `true` if the last attempt failed and the next one may not be made yet. */
+		val isBackingOff get() = (lastFailure != null) && (nextAttempt - clock() > 0)
+
+		fun connect(): FcpMessageRouter {
+			while (true) {
+				openConnection?.let { return it }
+				val currentAttempt = connectAttempt.get()
+				if ((currentAttempt != null) && !currentAttempt.isDone) {
+					return await(currentAttempt)
+				}
+				lastFailure?.let { failure ->
+					val remainingDelay = nextAttempt - clock()
+					if (remainingDelay > 0) {
+						throw IOException("Could not connect, next attempt in ${TimeUnit.NANOSECONDS.toMillis(remainingDelay)} ms.", failure)
+					}
+				}
+				val attempt = CompletableFuture<FcpMessageRouter>()
+				if (connectAttempt.compareAndSet(currentAttempt, attempt)) {
+					createConnection(attempt)
+					return await(attempt)
+				}
+			}
+		}
+
+		private fun createConnection(attempt: CompletableFuture<FcpMessageRouter>) {
+			var newConnection: FcpMessageRouter? = null
+			try {
+				clientName = if (size == 1) baseClientName.get() else "${baseClientName.get()}-$index"
+				newConnection = connectionFactory.createConnection(clientName!!)
+				connectionListener.connected(index, newConnection)
+			} catch (e: Exception) {
+				/* a connection is only used once its listener has accepted it. */
+				newConnection?.close()
+				failedAttempts++
+				nextAttempt = clock() + TimeUnit.MILLISECONDS.toNanos(backoff.delay(failedAttempts))
+				lastFailure = e as? IOException ?: IOException(e)
+				attempt.completeExceptionally(e)
+				return
+			}
+			failedAttempts = 0
+			lastFailure = null
+			connection.set(newConnection)
+			attempt.complete(newConnection)
+		}
+
+		private fun await(attempt: CompletableFuture<FcpMessageRouter>): FcpMessageRouter =
+				try {
+					attempt.get()
+				} catch (e: ExecutionException) {
+					throw e.cause as? IOException ?: IOException(e.cause)
+				} catch (e: InterruptedException) {
+					Thread.currentThread().interrupt()
+					throw IOException(e)
+				}
+
+	}
+
+	/** Opens a new connection to the node. */
+	interface ConnectionFactory {
+
+		@Throws(IOException::class)
+		fun createConnection(clientName: String): FcpMessageRouter
+
+	}
+
+	/**
+	 * Is notified after a connection of the pool has been opened; index `0` is
+	 * the primary connection. If the listener fails, the connection is closed
+	 * and the attempt counts as a failed one. The pool does not hand out the
+	 * connection until the listener has returned, so the listener has to use
+	 * the given connection directly instead of asking the pool for one.
+	 */
+	interface ConnectionListener {
+
+		@Throws(IOException::class)
+		fun connected(index: Int, connection: FcpMessageRouter)
+
+	}
+
+}
+
+/**
+ * Health and load of a single connection of a [DefaultFcpClient].
+ *
+ * @param clientName The client name the connection was opened with, or `null` if it has never been opened
+ * @param connected `true` if the connection is currently open
+ * @param inFlightRequests The number of dialogs that are currently waiting for a reply on the connection
+ * @param pendingBytes The number of payload bytes that are queued but not yet written to the connection
+ */
+data class ConnectionStatus(val clientName: String?, val connected: Boolean, val inFlightRequests: Int, val pendingBytes: Long)
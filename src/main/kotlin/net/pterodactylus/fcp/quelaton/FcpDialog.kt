@@ -5,86 +5,245 @@ import net.pterodactylus.fcp.*
 import net.pterodactylus.fcp.util.*
 import java.io.*
 import java.util.concurrent.*
-import java.util.concurrent.locks.*
-import kotlin.concurrent.*
+import java.util.concurrent.atomic.*
 
 /**
  * An FCP dialog enables you to conveniently wait for a specific set of FCP replies.
+ *
+ * Dialogs are event-driven: the [future][send] returned for a dialog is
+ * completed from the listener callbacks, and the executor service is only used
+ * to write outbound messages, so an in-flight dialog does not occupy a thread
+ * while it waits for the node to reply.
+ *
+ * Dialogs are registered with the [FcpMessageRouter] of their connection under
+ * their current identifier so that they only receive the messages that are meant
+ * for them. A dialog unregisters itself once its future is done.
+ *
+ * If the connection supplier has a [request scheduler][RequestScheduler],
+ * requests that keep running on the node are only sent once the scheduler
+ * allows it.
+ *
+ * If the [connection supplier][ConnectionSupplier.getCommandTimeout] specifies a
+ * command timeout, the future fails with a [TimeoutException] when the node does
+ * not answer in time. When the future of a request that keeps running on the
+ * node (a `ClientGet` or `ClientPut`, or any persistent request) is cancelled
+ * or times out, the request is removed from the node.
  */
-internal abstract class FcpDialog<R>(executorService: ExecutorService, private val fcpConnection: FcpConnection, initialResult: R? = null) : Closeable, FcpListener {
+internal abstract class FcpDialog<R>(private val executorService: ExecutorService, private val connectionSupplier: ConnectionSupplier, initialResult: R? = null) : Closeable, FcpListener {
 
-	private val lock = ReentrantLock()
-	private val newMessageOrFinished: Condition = lock.newCondition()
-	private val executorService: ListeningExecutorService = MoreExecutors.listeningDecorator(executorService)
+	private val completion = CompletableListenableFuture<R>()
 	private val messages = ConcurrentLinkedQueue<FcpMessage>()
-	protected var identifier by atomic<String?>(null)
-	private var connectionClosed by atomic(false)
-	private var connectionFailureReason by atomic<Throwable?>(null)
+	private val writing = AtomicBoolean(false)
+	private val currentIdentifier = AtomicReference<String?>()
+	private val currentMessageRouter = AtomicReference<FcpMessageRouter?>()
+	private val registered = AtomicBoolean(false)
+	private var request by atomic<FcpMessage?>(null)
+	private var requestWritten by atomic(false)
+	private val removal = AtomicReference<FcpMessage?>()
+	private var started by atomic(false)
+	private var closed by atomic(false)
 	private var finished by atomic(false)
 	protected var result by atomicObservable(initialResult) { finish() }
 
+	init {
+		completion.whenComplete { _, failure ->
+			if (completion.isCancelled || (failure is TimeoutException)) {
+				removeRequest()
+			}
+			close()
+		}
+	}
+
+	protected var identifier: String?
+		get() = currentIdentifier.get()
+		set(identifier) {
+			val oldIdentifier = currentIdentifier.getAndSet(identifier)
+			if (registered.get()) {
+				currentMessageRouter.get()?.apply {
+					register(identifier, this@FcpDialog)
+					unregister(oldIdentifier, this@FcpDialog)
+				}
+			}
+		}
+
 	protected fun finish() {
 		finished = true
-		notifySyncObject()
+		completeIfFinished()
 	}
 
-	@Throws(IOException::class)
 	open fun send(fcpMessage: FcpMessage): ListenableFuture<R> {
-		identifier = fcpMessage.getField("Identifier")
-		fcpConnection.addFcpListener(this)
+		identifier = fcpMessage.getField("Identifier") ?: fcpMessage.getField("Directory")
+		request = fcpMessage
+		connectionSupplier.commandTimeout.takeIf { it > 0 }?.let { timeout ->
+			Deadlines.expire(completion, timeout, TimeUnit.MILLISECONDS)
+		}
+		val requestScheduler = connectionSupplier.requestScheduler
+		if ((requestScheduler != null) && (fcpMessage.name in runningRequests)) {
+			requestScheduler.schedule(connectionSupplier.tenant, fcpMessage.priority, fcpMessage.size, completion) { start(fcpMessage) }
+		} else {
+			start(fcpMessage)
+		}
+		return completion
+	}
+
+	private fun start(fcpMessage: FcpMessage) {
 		messages.add(fcpMessage)
-		return executorService.submit<R> {
-			lock.withLock {
-				while (!connectionClosed && (!finished || !messages.isEmpty())) {
-					while (messages.peek() != null) {
-						val message: FcpMessage = messages.poll()
-						fcpConnection.sendMessage(message)
-					}
-					if (finished || connectionClosed) {
-						continue
-					}
-					newMessageOrFinished.await()
+		started = true
+		writeMessages()
+	}
+
+	/* the node uses “semi-interactive” if a request does not specify a priority. */
+	private val FcpMessage.priority
+		get() = getField("PriorityClass")?.toIntOrNull() ?: Priority.semiInteractive.ordinal
+
+	/* the size of the data to insert, or the maximum size of the data to retrieve. */
+	private val FcpMessage.size
+		get() = getField("DataLength")?.toLongOrNull()
+				?: getField("Filename")?.takeIf { name == "ClientPut" }?.let(::File)?.takeIf(File::isFile)?.length()
+				?: getField("MaxSize")?.toLongOrNull()
+				?: fileIndices.takeIf { name == "ClientPutComplexDir" }?.map { getField("Files.$it.DataLength")?.toLongOrNull() ?: 0L }?.sum()
+
+	protected fun sendMessage(fcpMessage: FcpMessage) {
+		messages.add(fcpMessage)
+		writeMessages()
+	}
+
+	private fun writeMessages() {
+		if (writing.compareAndSet(false, true)) {
+			try {
+				executorService.execute(this::drainMessages)
+			} catch (e: RejectedExecutionException) {
+				writing.set(false)
+				fail(e)
+			}
+		}
+	}
+
+	private fun drainMessages() {
+		try {
+			val messageRouter = registeredMessageRouter()
+			while (!completion.isDone) {
+				val message = messages.poll() ?: break
+				messageRouter.sendMessage(message)
+				if (message === request) {
+					requestWritten = true
 				}
 			}
-			connectionFailureReason?.let { throw ExecutionException(it) } ?: result
+			if (requestWritten) {
+				removal.getAndSet(null)?.let(messageRouter::sendMessage)
+			}
+		} catch (e: Exception) {
+			fail(e)
+		} finally {
+			writing.set(false)
+		}
+		if ((messages.isNotEmpty() && !completion.isDone) || (requestWritten && (removal.get() != null))) {
+			writeMessages()
+		} else {
+			completeIfFinished()
 		}
 	}
 
-	protected fun sendMessage(fcpMessage: FcpMessage) {
-		messages.add(fcpMessage)
-		notifySyncObject()
+	private fun registeredMessageRouter(): FcpMessageRouter =
+			currentMessageRouter.get() ?: connectionSupplier.get().also { messageRouter ->
+				currentMessageRouter.set(messageRouter)
+				if (!closed && !registered.getAndSet(true)) {
+					messageRouter.register(identifier, this)
+					if (closed) {
+						close()
+					}
+				}
+			}
+
+	private fun completeIfFinished() {
+		if (started && finished && messages.isEmpty() && !writing.get()) {
+			completion.complete(result)
+		}
 	}
 
-	private fun notifySyncObject() {
-		lock.withLock {
-			newMessageOrFinished.signalAll()
+	protected fun fail(throwable: Throwable) {
+		completion.completeExceptionally(throwable)
+	}
+
+	/**
+	 * Runs [action] once the future of this dialog is done, with the result
+	 * the future has been completed with, or `null` if it has failed or has
+	 * been cancelled.
+	 */
+	protected fun whenDone(action: (R?) -> Unit) {
+		completion.whenComplete { result, _ -> action(result) }
+	}
+
+	/**
+	 * Negotiates direct disk access to the given directory on the connection
+	 * of this dialog, using the [registry][FcpMessageRouter.directDiskAccess]
+	 * of the connection, and resends the given request once the node has
+	 * allowed the access. If the node does not allow it, [denied] is run
+	 * instead.
+	 */
+	protected fun resendWithDirectDiskAccess(request: FcpMessage, directory: String, read: Boolean, write: Boolean, denied: Runnable) =
+			resendWithDirectDiskAccess(request, listOf(directory), read, write, denied)
+
+	/**
+	 * Negotiates direct disk access to each of the given directories, like
+	 * [resendWithDirectDiskAccess], and resends the given request once the
+	 * node has allowed the access to all of them.
+	 */
+	protected fun resendWithDirectDiskAccess(request: FcpMessage, directories: Collection<String>, read: Boolean, write: Boolean, denied: Runnable) {
+		val directDiskAccess = currentMessageRouter.get()?.directDiskAccess ?: return denied.run()
+		val authorization = Futures.allAsList(directories.distinct().map { directDiskAccess.authorize(executorService, it, read, write) })
+		authorization.addListener(Runnable {
+			try {
+				if (authorization.get().all { it }) {
+					sendMessage(request)
+				} else {
+					denied.run()
+				}
+			} catch (e: ExecutionException) {
+				fail(e.cause ?: e)
+			} catch (e: CancellationException) {
+				denied.run()
+			}
+		}, Executor(Runnable::run))
+	}
+
+	/**
+	 * Removes the request of this dialog from the node if it is a request that
+	 * keeps running on the node, so that abandoned requests do not waste the
+	 * node’s bandwidth and do not pile up on the node. The removal is written
+	 * by the writer of this dialog once the request itself has been written,
+	 * so it can never reach the node before the request; a request that has
+	 * not been written at all is not removed.
+	 */
+	private fun removeRequest() {
+		val request = request ?: return
+		val global = request.getField("Global") == "true"
+		val persistent = (request.getField("Persistence") ?: "connection") != "connection"
+		if (!global && !persistent && (request.name !in runningRequests)) {
+			return
 		}
+		currentMessageRouter.get() ?: return
+		removal.set(RemovePersistentRequest(identifier).apply { setGlobal(global) })
+		writeMessages()
 	}
 
 	override fun close() {
-		fcpConnection.removeFcpListener(this)
+		closed = true
+		if (registered.getAndSet(false)) {
+			currentMessageRouter.get()?.unregister(identifier, this)
+		}
 	}
 
 	private fun <M : BaseMessage> consume(message: M, identifier: String = "Identifier", consumer: (M) -> Unit) {
 		if (message.getField(identifier) == this.identifier) {
-			consumeAlways(message, consumer)
+			consumer(message)
 		}
 	}
 
-	private fun <M : BaseMessage> consumeAlways(message: M, consumer: (M) -> Unit) {
-		consumer(message)
-		notifySyncObject()
-	}
-
 	private fun consumeUnknown(fcpMessage: FcpMessage) {
-		consumeUnknownMessage(fcpMessage)
-		notifySyncObject()
-	}
-
-	private fun consumeClose(throwable: Throwable) {
-		connectionFailureReason = throwable
-		connectionClosed = true
-		notifySyncObject()
+		if (fcpMessage.getField("Identifier") == this.identifier) {
+			consumeUnknownMessage(fcpMessage)
+		}
 	}
 
 	override fun receivedNodeHello(fcpConnection: FcpConnection, nodeHello: NodeHello) {
@@ -95,9 +254,7 @@ internal abstract class FcpDialog<R>(executorService: ExecutorService, private v
 
 	override fun receivedCloseConnectionDuplicateClientName(fcpConnection: FcpConnection,
 			closeConnectionDuplicateClientName: CloseConnectionDuplicateClientName) {
-		connectionFailureReason = IOException("duplicate client name")
-		connectionClosed = true
-		notifySyncObject()
+		fail(IOException("duplicate client name"))
 	}
 
 	override fun receivedSSKKeypair(fcpConnection: FcpConnection, sskKeypair: SSKKeypair) {
@@ -333,7 +490,13 @@ internal abstract class FcpDialog<R>(executorService: ExecutorService, private v
 	protected open fun consumeUnknownMessage(fcpMessage: FcpMessage) {}
 
 	override fun connectionClosed(fcpConnection: FcpConnection, throwable: Throwable) {
-		consumeClose(throwable)
+		fail(throwable)
 	}
 
 }
+
+private val runningRequests = setOf("ClientGet", "ClientPut", "ClientPutDiskDir", "ClientPutComplexDir")
+
+/* the indices of the files of a ClientPutComplexDir. */
+internal val FcpMessage.fileIndices
+	get() = generateSequence(0) { it + 1 }.takeWhile { getField("Files.$it.Name") != null }
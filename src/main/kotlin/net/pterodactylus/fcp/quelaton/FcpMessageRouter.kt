@@ -0,0 +1,268 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.*
+import java.io.*
+import java.util.concurrent.*
+import java.util.concurrent.atomic.*
+
+/**
+ * Connection-level message router. The router is the only [FcpListener] that is
+ * registered with its [FcpConnection]; it forwards every incoming message to the
+ * listeners that have been [registered][register] for the identifier of the
+ * message (or the directory, for TestDDA messages), so dispatching a message
+ * does not depend on the number of open dialogs.
+ *
+ * Messages that do not carry an identifier are forwarded to all listeners that
+ * have been registered without one. Connection failures are forwarded to all
+ * registered listeners.
+ *
+ * Outgoing messages are appended to a lock-free queue that is drained by a
+ * single writer: the sending thread that finds the queue idle writes all queued
+ * messages, including those that other threads add while it is writing, so
+ * concurrent dialogs do not compete for the connection. A failed write closes
+ * the connection and is forwarded to all registered listeners.
+ */
+internal class FcpMessageRouter(private val fcpConnection: FcpConnection) : FcpListener {
+
+	private val listeners = ConcurrentHashMap<String, MutableSet<FcpListener>>()
+	private val unidentifiedListeners: MutableSet<FcpListener> = ConcurrentHashMap.newKeySet()
+	private val outgoingMessages = ConcurrentLinkedQueue<FcpMessage>()
+	private val writing = AtomicBoolean(false)
+	private val registeredListeners = AtomicInteger()
+	private val queuedBytes = AtomicLong()
+
+	init {
+		fcpConnection.addFcpListener(this)
+	}
+
+	val isClosed get() = fcpConnection.isClosed
+
+	/** The number of listeners that are currently registered, i.e. the number of open dialogs. */
+	val inFlightRequests get() = registeredListeners.get()
+
+	/** The number of payload bytes of messages that are queued but not yet written. */
+	val pendingBytes get() = queuedBytes.get()
+
+	/** The directories that the node has authorized for direct disk access on this connection. */
+	val directDiskAccess = DirectDiskAccess(this)
+
+	/**
+	 * Queues the given message for sending. If no other thread is currently
+	 * writing to the connection, the message (and every message queued in the
+	 * meantime) is written by the calling thread before this method returns.
+	 */
+	@Throws(IOException::class)
+	fun sendMessage(fcpMessage: FcpMessage) {
+		queuedBytes.addAndGet(fcpMessage.payloadLength)
+		outgoingMessages.add(fcpMessage)
+		while (outgoingMessages.isNotEmpty() && writing.compareAndSet(false, true)) {
+			try {
+				writeOutgoingMessages()
+			} finally {
+				writing.set(false)
+			}
+		}
+	}
+
+	private fun writeOutgoingMessages() {
+		try {
+			while (true) {
+				val fcpMessage = outgoingMessages.poll() ?: return
+				try {
+					fcpConnection.sendMessage(fcpMessage)
+				} finally {
+					queuedBytes.addAndGet(-fcpMessage.payloadLength)
+				}
+			}
+		} catch (e: IOException) {
+			generateSequence { outgoingMessages.poll() }.forEach { queuedBytes.addAndGet(-it.payloadLength) }
+			fcpConnection.close()
+			connectionClosed(fcpConnection, e)
+			throw e
+		}
+	}
+
+	/**
+	 * Adds a listener that will receive all messages from the connection,
+	 * regardless of their identifier.
+	 */
+	fun addFcpListener(fcpListener: FcpListener) =
+			fcpConnection.addFcpListener(fcpListener)
+
+	fun close() =
+			fcpConnection.close()
+
+	fun register(identifier: String?, fcpListener: FcpListener) {
+		if (identifier == null) {
+			if (unidentifiedListeners.add(fcpListener)) {
+				registeredListeners.incrementAndGet()
+			}
+			return
+		}
+		listeners.compute(identifier) { _, registered ->
+			(registered ?: ConcurrentHashMap.newKeySet<FcpListener>()).apply {
+				if (add(fcpListener)) {
+					registeredListeners.incrementAndGet()
+				}
+			}
+		}
+	}
+
+	fun unregister(identifier: String?, fcpListener: FcpListener) {
+		if (identifier == null) {
+			if (unidentifiedListeners.remove(fcpListener)) {
+				registeredListeners.decrementAndGet()
+			}
+			return
+		}
+		listeners.computeIfPresent(identifier) { _, registered ->
+			registered.apply {
+				if (remove(fcpListener)) {
+					registeredListeners.decrementAndGet()
+				}
+			}.takeIf { it.isNotEmpty() }
+		}
+	}
+
+	private fun listenersFor(identifier: String?): Collection<FcpListener> =
+			if (identifier == null) unidentifiedListeners else listeners[identifier] ?: emptySet<FcpListener>()
+
+	private fun <M : BaseMessage> route(message: M, identifier: String = "Identifier", delivery: FcpListener.(M) -> Unit) =
+			listenersFor(message.getField(identifier)).forEach { it.delivery(message) }
+
+	private fun broadcast(delivery: FcpListener.() -> Unit) =
+			(listeners.values.flatten() + unidentifiedListeners).toSet().forEach { it.delivery() }
+
+	override fun receivedNodeHello(fcpConnection: FcpConnection, nodeHello: NodeHello) =
+			route(nodeHello) { receivedNodeHello(fcpConnection, it) }
+
+	override fun receivedCloseConnectionDuplicateClientName(fcpConnection: FcpConnection,
+			closeConnectionDuplicateClientName: CloseConnectionDuplicateClientName) =
+			broadcast { receivedCloseConnectionDuplicateClientName(fcpConnection, closeConnectionDuplicateClientName) }
+
+	override fun receivedSSKKeypair(fcpConnection: FcpConnection, sskKeypair: SSKKeypair) =
+			route(sskKeypair) { receivedSSKKeypair(fcpConnection, it) }
+
+	override fun receivedPeer(fcpConnection: FcpConnection, peer: Peer) =
+			route(peer) { receivedPeer(fcpConnection, it) }
+
+	override fun receivedEndListPeers(fcpConnection: FcpConnection, endListPeers: EndListPeers) =
+			route(endListPeers) { receivedEndListPeers(fcpConnection, it) }
+
+	override fun receivedPeerNote(fcpConnection: FcpConnection, peerNote: PeerNote) =
+			route(peerNote) { receivedPeerNote(fcpConnection, it) }
+
+	override fun receivedEndListPeerNotes(fcpConnection: FcpConnection, endListPeerNotes: EndListPeerNotes) =
+			route(endListPeerNotes) { receivedEndListPeerNotes(fcpConnection, it) }
+
+	override fun receivedPeerRemoved(fcpConnection: FcpConnection, peerRemoved: PeerRemoved) =
+			route(peerRemoved) { receivedPeerRemoved(fcpConnection, it) }
+
+	override fun receivedNodeData(fcpConnection: FcpConnection, nodeData: NodeData) =
+			route(nodeData) { receivedNodeData(fcpConnection, it) }
+
+	override fun receivedTestDDAReply(fcpConnection: FcpConnection, testDDAReply: TestDDAReply) =
+			route(testDDAReply, "Directory") { receivedTestDDAReply(fcpConnection, it) }
+
+	override fun receivedTestDDAComplete(fcpConnection: FcpConnection, testDDAComplete: TestDDAComplete) =
+			route(testDDAComplete, "Directory") { receivedTestDDAComplete(fcpConnection, it) }
+
+	override fun receivedPersistentGet(fcpConnection: FcpConnection, persistentGet: PersistentGet) =
+			route(persistentGet) { receivedPersistentGet(fcpConnection, it) }
+
+	override fun receivedPersistentPut(fcpConnection: FcpConnection, persistentPut: PersistentPut) =
+			route(persistentPut) { receivedPersistentPut(fcpConnection, it) }
+
+	override fun receivedEndListPersistentRequests(fcpConnection: FcpConnection,
+			endListPersistentRequests: EndListPersistentRequests) =
+			route(endListPersistentRequests) { receivedEndListPersistentRequests(fcpConnection, it) }
+
+	override fun receivedURIGenerated(fcpConnection: FcpConnection, uriGenerated: URIGenerated) =
+			route(uriGenerated) { receivedURIGenerated(fcpConnection, it) }
+
+	override fun receivedDataFound(fcpConnection: FcpConnection, dataFound: DataFound) =
+			route(dataFound) { receivedDataFound(fcpConnection, it) }
+
+	override fun receivedAllData(fcpConnection: FcpConnection, allData: AllData) =
+			route(allData) { receivedAllData(fcpConnection, it) }
+
+	override fun receivedSimpleProgress(fcpConnection: FcpConnection, simpleProgress: SimpleProgress) =
+			route(simpleProgress) { receivedSimpleProgress(fcpConnection, it) }
+
+	override fun receivedStartedCompression(fcpConnection: FcpConnection, startedCompression: StartedCompression) =
+			route(startedCompression) { receivedStartedCompression(fcpConnection, it) }
+
+	override fun receivedFinishedCompression(fcpConnection: FcpConnection, finishedCompression: FinishedCompression) =
+			route(finishedCompression) { receivedFinishedCompression(fcpConnection, it) }
+
+	override fun receivedUnknownPeerNoteType(fcpConnection: FcpConnection, unknownPeerNoteType: UnknownPeerNoteType) =
+			route(unknownPeerNoteType) { receivedUnknownPeerNoteType(fcpConnection, it) }
+
+	override fun receivedUnknownNodeIdentifier(fcpConnection: FcpConnection,
+			unknownNodeIdentifier: UnknownNodeIdentifier) =
+			route(unknownNodeIdentifier) { receivedUnknownNodeIdentifier(fcpConnection, it) }
+
+	override fun receivedConfigData(fcpConnection: FcpConnection, configData: ConfigData) =
+			route(configData) { receivedConfigData(fcpConnection, it) }
+
+	override fun receivedGetFailed(fcpConnection: FcpConnection, getFailed: GetFailed) =
+			route(getFailed) { receivedGetFailed(fcpConnection, it) }
+
+	override fun receivedPutFailed(fcpConnection: FcpConnection, putFailed: PutFailed) =
+			route(putFailed) { receivedPutFailed(fcpConnection, it) }
+
+	override fun receivedIdentifierCollision(fcpConnection: FcpConnection, identifierCollision: IdentifierCollision) =
+			route(identifierCollision) { receivedIdentifierCollision(fcpConnection, it) }
+
+	override fun receivedPersistentPutDir(fcpConnection: FcpConnection, persistentPutDir: PersistentPutDir) =
+			route(persistentPutDir) { receivedPersistentPutDir(fcpConnection, it) }
+
+	override fun receivedPersistentRequestRemoved(fcpConnection: FcpConnection,
+			persistentRequestRemoved: PersistentRequestRemoved) =
+			route(persistentRequestRemoved) { receivedPersistentRequestRemoved(fcpConnection, it) }
+
+	override fun receivedSubscribedUSK(fcpConnection: FcpConnection, subscribedUSK: SubscribedUSK) =
+			route(subscribedUSK) { receivedSubscribedUSK(fcpConnection, it) }
+
+	override fun receivedSubscribedUSKUpdate(fcpConnection: FcpConnection, subscribedUSKUpdate: SubscribedUSKUpdate) =
+			route(subscribedUSKUpdate) { receivedSubscribedUSKUpdate(fcpConnection, it) }
+
+	override fun receivedPluginInfo(fcpConnection: FcpConnection, pluginInfo: PluginInfo) =
+			route(pluginInfo) { receivedPluginInfo(fcpConnection, it) }
+
+	override fun receivedPluginRemoved(fcpConnection: FcpConnection, pluginRemoved: PluginRemoved) =
+			route(pluginRemoved) { receivedPluginRemoved(fcpConnection, it) }
+
+	override fun receivedFCPPluginReply(fcpConnection: FcpConnection, fcpPluginReply: FCPPluginReply) =
+			route(fcpPluginReply) { receivedFCPPluginReply(fcpConnection, it) }
+
+	override fun receivedPersistentRequestModified(fcpConnection: FcpConnection,
+			persistentRequestModified: PersistentRequestModified) =
+			route(persistentRequestModified) { receivedPersistentRequestModified(fcpConnection, it) }
+
+	override fun receivedPutSuccessful(fcpConnection: FcpConnection, putSuccessful: PutSuccessful) =
+			route(putSuccessful) { receivedPutSuccessful(fcpConnection, it) }
+
+	override fun receivedPutFetchable(fcpConnection: FcpConnection, putFetchable: PutFetchable) =
+			route(putFetchable) { receivedPutFetchable(fcpConnection, it) }
+
+	override fun receivedSentFeed(source: FcpConnection, sentFeed: SentFeed) =
+			route(sentFeed) { receivedSentFeed(source, it) }
+
+	override fun receivedBookmarkFeed(fcpConnection: FcpConnection, receivedBookmarkFeed: ReceivedBookmarkFeed) =
+			route(receivedBookmarkFeed) { receivedBookmarkFeed(fcpConnection, it) }
+
+	override fun receivedProtocolError(fcpConnection: FcpConnection, protocolError: ProtocolError) =
+			route(protocolError) { receivedProtocolError(fcpConnection, it) }
+
+	override fun receivedMessage(fcpConnection: FcpConnection, fcpMessage: FcpMessage) =
+			listenersFor(fcpMessage.getField("Identifier")).forEach { it.receivedMessage(fcpConnection, fcpMessage) }
+
+	override fun connectionClosed(fcpConnection: FcpConnection, throwable: Throwable) =
+			broadcast { connectionClosed(fcpConnection, throwable) }
+
+}
+
+private val FcpMessage.payloadLength
+	get() = getField("DataLength")?.toLongOrNull()
+			?: fileIndices.filter { getField("Files.$it.UploadFrom") == "direct" }.map { getField("Files.$it.DataLength")?.toLongOrNull() ?: 0L }.sum()
@@ -0,0 +1,39 @@
+package net.pterodactylus.fcp.quelaton
+
+import java.io.*
+import java.nio.*
+import java.nio.channels.*
+import java.nio.file.*
+
+/**
+ * Input stream for a file that is opened when it is first read and closed
+ * once it has been read to its end, so a command that is never sent does not
+ * leave a file open. Reads go from the file channel straight into the
+ * caller’s array.
+ */
+internal class PathInputStream(private val path: Path) : InputStream() {
+
+	private var channel: FileChannel? = null
+	private var closed = false
+
+	override fun read(): Int =
+			ByteArray(1).let { if (read(it, 0, 1) == -1) -1 else it[0].toInt() and 0xff }
+
+	override fun read(b: ByteArray, off: Int, len: Int): Int {
+		if (len == 0) {
+			return 0
+		}
+		val channel = openChannel() ?: return -1
+		return channel.read(ByteBuffer.wrap(b, off, len)).also { if (it == -1) close() }
+	}
+
+	override fun close() {
+		closed = true
+		channel?.close()
+		channel = null
+	}
+
+	private fun openChannel(): FileChannel? =
+			if (closed) null else channel ?: FileChannel.open(path, StandardOpenOption.READ).also { channel = it }
+
+}
@@ -0,0 +1,126 @@
+package net.pterodactylus.fcp.quelaton
+
+import java.io.*
+import java.util.concurrent.*
+import java.util.concurrent.atomic.*
+
+/**
+ * Input stream for a payload that is read directly from the connection. Reads
+ * are limited to the length of the payload; once the stream has been read to
+ * its end or closed, or once its payload has been [discarded][discard], it is
+ * released and [awaitRelease] returns, allowing the connection to continue
+ * with the next message.
+ */
+internal class PayloadInputStream(inputStream: InputStream, length: Long) : FilterInputStream(inputStream) {
+
+	private val released = CountDownLatch(1)
+	private val active = AtomicBoolean()
+	private var remaining = length
+	private var discarded = false
+
+	init {
+		if (length <= 0) {
+			release()
+		}
+	}
+
+	@Synchronized
+	override fun read(): Int {
+		checkNotDiscarded()
+		if (remaining <= 0) {
+			return release()
+		}
+		active.set(true)
+		return super.read().also { if (it == -1) release() else consumed(1) }
+	}
+
+	@Synchronized
+	override fun read(b: ByteArray, off: Int, len: Int): Int {
+		checkNotDiscarded()
+		if (remaining <= 0) {
+			return release()
+		}
+		active.set(true)
+		return super.read(b, off, minOf(len.toLong(), remaining).toInt()).also { if (it == -1) release() else consumed(it.toLong()) }
+	}
+
+	@Synchronized
+	override fun skip(n: Long): Long {
+		checkNotDiscarded()
+		if (remaining <= 0) {
+			return 0
+		}
+		active.set(true)
+		return super.skip(minOf(n, remaining)).also { consumed(it) }
+	}
+
+	@Synchronized
+	override fun available() =
+			if (discarded || (remaining <= 0)) 0 else minOf(super.available().toLong(), remaining).toInt()
+
+	override fun markSupported() = false
+
+	/* the remaining payload is skipped by the connection, not by us. */
+	override fun close() {
+		release()
+	}
+
+	/**
+	 * Skips the remaining payload and releases the stream. Reading the stream
+	 * afterwards fails with an [IOException].
+	 */
+	@Synchronized
+	fun discard() {
+		if (discarded) {
+			return
+		}
+		discarded = true
+		try {
+			val buffer = ByteArray(65536)
+			while (remaining > 0) {
+				val skipped = super.skip(remaining).takeIf { it > 0 }
+						?: super.read(buffer, 0, minOf(buffer.size.toLong(), remaining).toInt()).toLong().takeIf { it > 0 }
+						?: break
+				remaining -= skipped
+			}
+		} catch (e: IOException) {
+			/* the connection fails on its own. */
+		} finally {
+			release()
+		}
+	}
+
+	/**
+	 * Waits until the stream is released. If [idleTimeout] is positive and the
+	 * stream is not read for that long, the payload is [discarded][discard].
+	 */
+	fun awaitRelease(idleTimeout: Long, unit: TimeUnit) {
+		if (idleTimeout <= 0) {
+			released.await()
+			return
+		}
+		while (!released.await(idleTimeout, unit)) {
+			if (!active.getAndSet(false)) {
+				discard()
+			}
+		}
+	}
+
+	private fun consumed(length: Long) {
+		active.set(true)
+		remaining -= length
+		if (remaining <= 0) {
+			release()
+		}
+	}
+
+	private fun checkNotDiscarded() {
+		if (discarded) {
+			throw IOException("Payload has been discarded.")
+		}
+	}
+
+	private fun release() =
+			-1.also { released.countDown() }
+
+}
@@ -0,0 +1,121 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import net.pterodactylus.fcp.*
+import java.util.concurrent.*
+
+/**
+ * Local copy of the peer table of the node. Once [started][start], the mirror
+ * loads all peers with a single `ListPeers` and then follows every `Peer` and
+ * `PeerRemoved` message that passes through the connections of the client,
+ * e.g. the replies to `ListPeer`, `AddPeer`, `ModifyPeer`, and `RemovePeer`.
+ * Changes that happen on the node without passing through the client are
+ * caught by a periodic resync.
+ *
+ * Peers are indexed by identity, by name, and by every host/port pair of
+ * their physical UDP address, so [ListPeerCommand] lookups can be answered
+ * without a round-trip to the node.
+ */
+internal class PeerMirror(private val listPeers: () -> ListenableFuture<Collection<Peer>>) : FcpAdapter() {
+
+	private val peersByIdentity = HashMap<String, Peer>()
+	private val peersByKey = HashMap<String, Peer>()
+	private var changesDuringResync: MutableMap<String, Peer?>? = null
+	private var loaded = CompletableListenableFuture<Void>()
+	private var scheduler: ScheduledExecutorService? = null
+
+	/**
+	 * Loads the peer table and resyncs it with the node in the given interval.
+	 *
+	 * @return A future that is completed when the peer table has been loaded
+	 */
+	@Synchronized
+	fun start(resyncInterval: Long, unit: TimeUnit): ListenableFuture<Void> {
+		stop()
+		scheduler = ScheduledThreadPoolExecutor(1, ThreadFactory { runnable ->
+			Thread(runnable, "quelaton peer mirror").apply { isDaemon = true }
+		}).apply {
+			scheduleWithFixedDelay(this@PeerMirror::resync, 0, resyncInterval, unit)
+		}
+		return loaded
+	}
+
+	@Synchronized
+	fun stop() {
+		scheduler?.shutdownNow()
+		scheduler = null
+		loaded = CompletableListenableFuture()
+		changesDuringResync = null
+		peersByIdentity.clear()
+		peersByKey.clear()
+	}
+
+	/**
+	 * Returns the peer with the given identity, name, or host and port.
+	 *
+	 * @return The peer, or `null` if the mirror does not know the peer or has
+	 * not been loaded yet
+	 */
+	@Synchronized
+	fun find(nodeIdentifier: String): Peer? =
+			if (loaded.isDone) peersByIdentity[nodeIdentifier] ?: peersByKey[nodeIdentifier] else null
+
+	private fun resync() {
+		val loaded = synchronized(this) {
+			changesDuringResync = HashMap()
+			this.loaded
+		}
+		val peers = try {
+			listPeers().get()
+		} catch (e: ExecutionException) {
+			/* keep the current table, try again with the next resync. */
+			return
+		} catch (e: InterruptedException) {
+			return
+		}
+		synchronized(this) {
+			if (loaded !== this.loaded) {
+				return
+			}
+			val changes = changesDuringResync ?: return
+			changesDuringResync = null
+			peersByIdentity.clear()
+			peersByKey.clear()
+			peers.forEach(this::add)
+			changes.forEach { identity, peer -> if (peer == null) remove(identity) else add(peer) }
+			loaded.complete(null)
+		}
+	}
+
+	@Synchronized
+	override fun receivedPeer(fcpConnection: FcpConnection, peer: Peer) {
+		if (scheduler == null) {
+			return
+		}
+		changesDuringResync?.put(peer.identity, peer)
+		add(peer)
+	}
+
+	@Synchronized
+	override fun receivedPeerRemoved(fcpConnection: FcpConnection, peerRemoved: PeerRemoved) {
+		if (scheduler == null) {
+			return
+		}
+		changesDuringResync?.put(peerRemoved.identity, null)
+		remove(peerRemoved.identity)
+	}
+
+	private fun add(peer: Peer) {
+		remove(peer.identity)
+		peersByIdentity[peer.identity] = peer
+		peer.keys.forEach { peersByKey[it] = peer }
+	}
+
+	private fun remove(identity: String) {
+		peersByIdentity.remove(identity)?.let { peer -> peer.keys.forEach { peersByKey.remove(it, peer) } }
+	}
+
+	private val Peer.keys
+		get() = listOfNotNull(myName) + (physicalUDP?.split(';')?.filter(String::isNotEmpty) ?: emptyList())
+
+}
@@ -0,0 +1,91 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.*
+import java.util.concurrent.*
+import java.util.concurrent.TimeUnit.*
+import java.util.function.*
+
+/**
+ * Channel for the progress of a single request. Only the latest
+ * [SimpleProgress] is kept; it is converted and handed to the consumer on the
+ * given executor, at most once per interval and never concurrently. Offering
+ * progress therefore costs the connection’s reader thread one assignment, and
+ * a slow consumer only causes more progress to be skipped, without holding up
+ * the connection.
+ */
+internal class ProgressThrottle(private val executor: Executor, interval: Long, unit: TimeUnit, private val consumer: Consumer<RequestProgress>) {
+
+	private var interval = unit.toNanos(interval)
+	private var nextDelivery = System.nanoTime()
+	private var pending: SimpleProgress? = null
+	private var delivering = false
+	private var scheduledDelivery: ScheduledFuture<*>? = null
+
+	@Synchronized
+	fun offer(simpleProgress: SimpleProgress) {
+		pending = simpleProgress
+		if (!delivering) {
+			delivering = true
+			scheduleDelivery()
+		}
+	}
+
+	/**
+	 * Delivers the waiting progress, if any, without waiting for the interval
+	 * to end. Called when the request is finished, so that its final progress
+	 * is not held back.
+	 */
+	@Synchronized
+	fun flush() {
+		interval = 0
+		nextDelivery = System.nanoTime()
+		if (scheduledDelivery?.cancel(false) == true) {
+			scheduleDelivery()
+		}
+	}
+
+	private fun scheduleDelivery() {
+		val delay = nextDelivery - System.nanoTime()
+		try {
+			scheduledDelivery = if (delay <= 0) {
+				executor.execute(this::deliver).let { null }
+			} else {
+				scheduler.schedule({ executor.execute(this::deliver) }, delay, NANOSECONDS)
+			}
+		} catch (e: RejectedExecutionException) {
+			/* the client is shutting down; nobody is waiting for progress anymore. */
+			delivering = false
+		}
+	}
+
+	private fun deliver() {
+		val simpleProgress = synchronized(this) {
+			scheduledDelivery = null
+			pending.also { pending = null }
+		}
+		try {
+			simpleProgress?.let { consumer.accept(it.toRequestProgress()) }
+		} finally {
+			synchronized(this) {
+				nextDelivery = System.nanoTime() + interval
+				if (pending != null) {
+					scheduleDelivery()
+				} else {
+					delivering = false
+				}
+			}
+		}
+	}
+
+	private fun SimpleProgress.toRequestProgress() =
+			RequestProgress(total, required, failed, fatallyFailed, lastProgress, succeeded, isFinalizedTotal, minSuccessFetchBlocks)
+
+	private companion object {
+
+		val scheduler = ScheduledThreadPoolExecutor(1, ThreadFactory { runnable ->
+			Thread(runnable, "quelaton progress").apply { isDaemon = true }
+		}).apply { removeOnCancelPolicy = true }
+
+	}
+
+}
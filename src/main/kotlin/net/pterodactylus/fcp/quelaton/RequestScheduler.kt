@@ -0,0 +1,125 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import net.pterodactylus.fcp.*
+import java.util.*
+import java.util.concurrent.*
+
+/**
+ * Limits the number of requests that are running on the node at the same
+ * time and decides which waiting request is sent next.
+ *
+ * Requests are ordered by their [Priority]; requests with
+ * [interactive][Priority.interactive] or a higher priority are never held
+ * back, so they do not have to wait for bulk requests to finish. A waiting
+ * request is promoted by one priority class for every aging interval it has
+ * waited, so requests with a low priority still make progress. Among the
+ * waiting requests of the same priority, tenants are served in proportion to
+ * their weight (weighted fair queueing), and the requests of a tenant are sent
+ * in the order in which they were scheduled.
+ *
+ * If the scheduler is [size-aware][smallestFirst], the smallest waiting
+ * request of a tenant is sent first instead, which minimizes the mean time
+ * until the requests of a batch are finished. To keep large requests from
+ * starving, the oldest request of a tenant is sent first once it has waited
+ * for an aging interval. Requests of unknown size are treated as larger than
+ * all others.
+ */
+internal class RequestScheduler(private val maximumRunning: Int, agingInterval: Long, unit: TimeUnit, private val smallestFirst: Boolean, private val weight: (String) -> Int) {
+
+	private val agingInterval = maxOf(unit.toNanos(agingInterval), 1)
+	private val waiting = HashMap<Pair<String, Int>, WaitingRequests>()
+	private val virtualTimes = HashMap<String, Double>()
+	private var virtualTime = 0.0
+	private var running = 0
+	private var sequence = 0L
+
+	/**
+	 * Runs [start] as soon as the request may be sent. The request counts as
+	 * running until the given future is done; if the future is done before
+	 * the request has been started, the request is not started at all.
+	 *
+	 * @param size The size of the request in bytes, or `null` if it is not known
+	 */
+	fun schedule(tenant: String, priority: Int, size: Long?, completion: ListenableFuture<*>, start: () -> Unit) {
+		val request = Request(tenant, priority, size ?: Long.MAX_VALUE, synchronized(this) { sequence++ }, System.nanoTime(), start)
+		val startNow = synchronized(this) {
+			if (priority <= Priority.interactive.ordinal) {
+				running++
+				request.started = true
+				listOf(request)
+			} else {
+				waiting.getOrPut(tenant to priority, ::WaitingRequests).add(request)
+				dispatch()
+			}
+		}
+		completion.addListener(Runnable { finished(request) }, Executor(Runnable::run))
+		startNow.forEach { it.start() }
+	}
+
+	private fun finished(request: Request) {
+		synchronized(this) {
+			if (request.started) {
+				running--
+				dispatch()
+			} else {
+				request.removed = true
+				emptyList()
+			}
+		}.forEach { it.start() }
+	}
+
+	/* must be called while holding the lock; the returned requests have to
+	 * be started after the lock has been released. */
+	private fun dispatch(): List<Request> {
+		val started = mutableListOf<Request>()
+		while (running < maximumRunning) {
+			val now = System.nanoTime()
+			waiting.values.removeIf { it.next(now) == null }
+			val next = waiting.values.mapNotNull { it.next(now) }
+					.minWith(compareBy<Request>({ it.effectivePriority(now) }, { virtualTimes[it.tenant] ?: 0.0 }, Request::sequence))
+					?: break
+			next.removed = true
+			val tenantTime = maxOf(virtualTimes[next.tenant] ?: 0.0, virtualTime)
+			virtualTime = tenantTime
+			virtualTimes[next.tenant] = tenantTime + 1.0 / maxOf(weight(next.tenant), 1)
+			next.started = true
+			running++
+			started += next
+		}
+		return started
+	}
+
+	private fun Request.effectivePriority(now: Long) =
+			maxOf(priority - (now - scheduled) / agingInterval, 0)
+
+	/* the waiting requests of one tenant and priority. started and cancelled
+	 * requests are only marked as removed and are dropped once they reach the
+	 * head of a queue. */
+	private inner class WaitingRequests {
+
+		private val inOrder = ArrayDeque<Request>()
+		private val bySize = PriorityQueue<Request>(compareBy(Request::size, Request::sequence))
+
+		fun add(request: Request) {
+			inOrder += request
+			if (smallestFirst) {
+				bySize += request
+			}
+		}
+
+		fun next(now: Long): Request? {
+			while (inOrder.peek()?.removed == true) inOrder.remove()
+			while (bySize.peek()?.removed == true) bySize.remove()
+			val oldest = inOrder.peek() ?: return null
+			return if (!smallestFirst || (now - oldest.scheduled >= agingInterval)) oldest else bySize.peek()
+		}
+
+	}
+
+	private class Request(val tenant: String, val priority: Int, val size: Long, val sequence: Long, val scheduled: Long, val start: () -> Unit) {
+		var started = false
+		var removed = false
+	}
+
+}
@@ -0,0 +1,107 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.cache.*
+import com.google.common.util.concurrent.*
+import java.util.concurrent.*
+
+/**
+ * Optional cache for the results of commands that only read the state of the
+ * node. Caching is enabled per command type; results are cached by the key of
+ * the command (its name and flags) and expire after a configurable time.
+ *
+ * Commands that change the state of the node invalidate the cached results of
+ * the affected command types once they have succeeded. A result that arrives
+ * after such an invalidation is not cached, even if its command was started
+ * before.
+ */
+internal class ResultCache {
+
+	private val caches = ConcurrentHashMap<Class<*>, CommandCache>()
+
+	fun enable(commandType: Class<*>, timeToLive: Long, unit: TimeUnit, maximumSize: Long) {
+		caches[commandType] = CommandCache(CacheBuilder.newBuilder()
+				.expireAfterWrite(timeToLive, unit)
+				.maximumSize(maximumSize)
+				.build())
+	}
+
+	fun disable(commandType: Class<*>) {
+		caches.remove(commandType)
+	}
+
+	fun <R> execute(commandType: Class<*>, key: Any, command: () -> ListenableFuture<R>): ListenableFuture<R> =
+			execute(commandType, key) { _: Long? -> command() }
+
+	/**
+	 * Executes the command like [execute], but coalesces identical concurrent
+	 * commands in the given [SingleFlight]. Only commands that were started
+	 * between the same two invalidations are coalesced, so a caller never
+	 * joins a command that was started before the last invalidation.
+	 */
+	fun <R> execute(commandType: Class<*>, key: Any, singleFlight: SingleFlight, command: () -> ListenableFuture<R>): ListenableFuture<R> =
+			execute(commandType, key) { generation: Long? -> singleFlight.execute(listOf(key, generation), command) }
+
+	/* the generation is read once, before the command is started, and is
+	 * null if results of the command type are not cached. */
+	private fun <R> execute(commandType: Class<*>, key: Any, command: (Long?) -> ListenableFuture<R>): ListenableFuture<R> {
+		val commandCache = caches[commandType] ?: return command(null)
+		@Suppress("UNCHECKED_CAST")
+		commandCache.cache.getIfPresent(key)?.let { return CompletableListenableFuture<R>().apply { complete(it as R) } }
+		val generation = commandCache.generation
+		return command(generation).onSuccess { result ->
+			if (result != null) {
+				commandCache.put(key, result, generation)
+			}
+		}
+	}
+
+	fun invalidate(vararg commandTypes: Class<*>) {
+		commandTypes.mapNotNull(caches::get).forEach(CommandCache::invalidate)
+	}
+
+	fun <R> invalidateOnSuccess(future: ListenableFuture<R>, vararg commandTypes: Class<*>): ListenableFuture<R> =
+			if (commandTypes.none(caches::containsKey)) future else future.onSuccess { invalidate(*commandTypes) }
+
+	/* returns a future that completes only after the action has run, so a
+	 * caller never sees a result before the cache has been updated. if the
+	 * returned future is cancelled or expires, so is this one. */
+	private fun <R> ListenableFuture<R>.onSuccess(action: (R) -> Unit): ListenableFuture<R> =
+			CompletableListenableFuture<R>().also { result ->
+				addListener(Runnable {
+					try {
+						get().also(action).let { result.complete(it) }
+					} catch (e: ExecutionException) {
+						result.completeExceptionally(e.cause)
+					} catch (e: CancellationException) {
+						result.cancel(false)
+					}
+				}, Executor(Runnable::run))
+				result.whenComplete { _, _ ->
+					if (!isDone) {
+						cancel(true)
+					}
+				}
+			}
+
+	private class CommandCache(val cache: Cache<Any, Any>) {
+
+		@Volatile
+		var generation = 0L
+			private set
+
+		@Synchronized
+		fun put(key: Any, result: Any, generation: Long) {
+			if (this.generation == generation) {
+				cache.put(key, result)
+			}
+		}
+
+		@Synchronized
+		fun invalidate() {
+			generation++
+			cache.invalidateAll()
+		}
+
+	}
+
+}
@@ -0,0 +1,50 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import java.util.*
+import java.util.concurrent.*
+
+/**
+ * Coalesces identical concurrent commands. While a command is in flight, other
+ * callers that execute a command with the same key share its dialog and its
+ * result instead of asking the node the same question again.
+ *
+ * Every caller receives its own future, so cancelling it (or letting it time
+ * out) only affects that caller; the shared command keeps running for the
+ * others. Collection and map results are copied for every caller, so a caller
+ * that modifies its result does not change the results of the others; any
+ * other result object is shared by all callers.
+ */
+internal class SingleFlight {
+
+	private val inFlight = ConcurrentHashMap<Any, ListenableFuture<*>>()
+
+	fun <R> execute(key: Any, command: () -> ListenableFuture<R>): ListenableFuture<R> {
+		@Suppress("UNCHECKED_CAST")
+		val shared = inFlight.computeIfAbsent(key) { command() } as ListenableFuture<R>
+		/* the map must not be modified from within computeIfAbsent, and a
+		 * command may already be finished when it is returned. */
+		shared.addListener(Runnable { inFlight.remove(key, shared) }, Executor(Runnable::run))
+		return CompletableListenableFuture<R>().also { result ->
+			shared.addListener(Runnable {
+				try {
+					result.complete(copyOf(shared.get()))
+				} catch (e: ExecutionException) {
+					result.completeExceptionally(e.cause)
+				} catch (e: CancellationException) {
+					result.cancel(false)
+				}
+			}, Executor(Runnable::run))
+		}
+	}
+
+	@Suppress("UNCHECKED_CAST")
+	private fun <R> copyOf(result: R): R =
+			when (result) {
+				is Set<*> -> LinkedHashSet(result) as R
+				is Collection<*> -> ArrayList(result) as R
+				is Map<*, *> -> LinkedHashMap(result) as R
+				else -> result
+			}
+
+}
@@ -0,0 +1,87 @@
+package net.pterodactylus.fcp.quelaton;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.pterodactylus.fcp.test.AbstractClientCommandTest;
+
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link BatchCommand}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class BatchCommandTest extends AbstractClientCommandTest {
+
+	@Test
+	public void allCommandsAreSentBeforeTheFirstReplyAndResultsAreCollectedInOrder() throws Exception {
+		Future<List<Boolean>> results = client().<Boolean>batch()
+				.add(client().removePeer().byName("Friend1"))
+				.add(client().removePeer().byName("Friend2"))
+				.add(client().removePeer().byName("Friend3"))
+				.execute();
+		Map<String, String> identifiers = new HashMap<>();
+		connectAndAssert(() -> matchesFcpMessage("RemovePeer"));
+		identifiers.put(nodeIdentifier(), identifier());
+		readMessage(() -> matchesFcpMessage("RemovePeer"));
+		identifiers.put(nodeIdentifier(), identifier());
+		readMessage(() -> matchesFcpMessage("RemovePeer"));
+		identifiers.put(nodeIdentifier(), identifier());
+		replyWithPeerRemoved(identifiers.get("Friend3"));
+		answer("UnknownNodeIdentifier", "Identifier=" + identifiers.get("Friend2"), "NodeIdentifier=Friend2", "EndMessage");
+		replyWithPeerRemoved(identifiers.get("Friend1"));
+		assertThat(results.get(), contains(true, false, true));
+	}
+
+	@Test
+	public void emptyBatchReturnsAnEmptyList() throws Exception {
+		assertThat(client().batch().execute().get(), empty());
+	}
+
+	@Test
+	public void failureOfOneCommandFailsTheBatch() throws Exception {
+		SettableFuture<Boolean> failingCommand = SettableFuture.create();
+		Future<List<Boolean>> results = client().<Boolean>batch()
+				.add(() -> failingCommand)
+				.add(() -> SettableFuture.create())
+				.execute();
+		failingCommand.setException(new IOException());
+		try {
+			results.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(IOException.class));
+		}
+	}
+
+	@Test
+	public void cancellingTheBatchCancelsAllCommands() {
+		SettableFuture<Boolean> firstCommand = SettableFuture.create();
+		SettableFuture<Boolean> secondCommand = SettableFuture.create();
+		client().<Boolean>batch().add(() -> firstCommand).add(() -> secondCommand).execute().cancel(false);
+		assertThat(firstCommand.isCancelled(), is(true));
+		assertThat(secondCommand.isCancelled(), is(true));
+	}
+
+	private String nodeIdentifier() {
+		return lines().stream().filter(line -> line.startsWith("NodeIdentifier=")).map(line -> line.substring(15)).findFirst().orElse("");
+	}
+
+	private void replyWithPeerRemoved(String identifier) throws IOException {
+		answer("PeerRemoved", "Identifier=" + identifier, "NodeIdentifier=Friend", "EndMessage");
+	}
+
+}
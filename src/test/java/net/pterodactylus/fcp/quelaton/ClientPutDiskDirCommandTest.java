@@ -1,16 +1,22 @@
 package net.pterodactylus.fcp.quelaton;
 
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static net.pterodactylus.fcp.quelaton.RequestProgressMatcher.isRequestProgress;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import net.pterodactylus.fcp.Key;
 import net.pterodactylus.fcp.RequestProgress;
@@ -44,18 +50,32 @@ public class ClientPutDiskDirCommandTest extends AbstractClientPutCommandTest {
 
 	@Test
 	public void progressIsSentToConsumerCorrectly() throws Exception {
-		List<RequestProgress> requestProgress = new ArrayList<>();
-		Future<Optional<Key>> key = client().clientPutDiskDir().onProgress(requestProgress::add)
+		BlockingQueue<RequestProgress> requestProgress = new LinkedBlockingQueue<>();
+		Future<Optional<Key>> key = client().clientPutDiskDir().onProgress(requestProgress::add).progressInterval(0, SECONDS)
 				.fromDirectory(new File("")).uri("CHK@").execute();
 		connectAndAssert(() -> matchesClientPutDiskDir("Verbosity=1"));
 		replyWithSimpleProgress(1, 2, 3, 4, 5, 6, true, 8);
+		assertThat(requestProgress.poll(1, SECONDS), isRequestProgress(1, 2, 3, 4, 5, 6, true, 8));
 		replyWithSimpleProgress(11, 12, 13, 14, 15, 16, false, 18);
+		assertThat(requestProgress.poll(1, SECONDS), isRequestProgress(11, 12, 13, 14, 15, 16, false, 18));
 		replyWithPutSuccessful(identifier());
 		assertThat(key.get().get().getKey(), is("KSK@foo.txt"));
-		assertThat(requestProgress, contains(
-				isRequestProgress(1, 2, 3, 4, 5, 6, true, 8),
-				isRequestProgress(11, 12, 13, 14, 15, 16, false, 18)
-		));
+	}
+
+	@Test
+	public void progressWithinTheProgressIntervalIsCoalesced() throws Exception {
+		BlockingQueue<RequestProgress> requestProgress = new LinkedBlockingQueue<>();
+		Future<Optional<Key>> key = client().clientPutDiskDir().onProgress(requestProgress::add).progressInterval(1, MINUTES)
+				.fromDirectory(new File("")).uri("CHK@").execute();
+		connectAndAssert(() -> matchesClientPutDiskDir("Verbosity=1"));
+		replyWithSimpleProgress(1, 2, 3, 4, 5, 6, true, 8);
+		assertThat(requestProgress.poll(1, SECONDS), isRequestProgress(1, 2, 3, 4, 5, 6, true, 8));
+		replyWithSimpleProgress(11, 12, 13, 14, 15, 16, false, 18);
+		replyWithSimpleProgress(21, 22, 23, 24, 25, 26, true, 28);
+		replyWithPutSuccessful(identifier());
+		assertThat(key.get().get().getKey(), is("KSK@foo.txt"));
+		assertThat(requestProgress.poll(1, SECONDS), isRequestProgress(21, 22, 23, 24, 25, 26, true, 28));
+		assertThat(requestProgress.poll(100, MILLISECONDS), nullValue());
 	}
 
 	@Test
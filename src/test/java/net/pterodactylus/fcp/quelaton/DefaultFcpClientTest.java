@@ -1,8 +1,10 @@
 package net.pterodactylus.fcp.quelaton;
 
 import java.io.IOException;
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import net.pterodactylus.fcp.FcpKeyPair;
 import net.pterodactylus.fcp.test.AbstractClientCommandTest;
@@ -21,6 +23,7 @@ public class DefaultFcpClientTest extends AbstractClientCommandTest {
 			"SSK@RVCHbJdkkyTCeNN9AYukEg76eyqmiosSaNKgE3U9zUw,7SHH53gletBVb9JD7nBsyClbLQsBubDPEIcwg908r7Y,AQECAAE/";
 	private static final String REQUEST_URI =
 			"SSK@wtbgd2loNcJCXvtQVOftl2tuWBomDQHfqS6ytpPRhfw,7SHH53gletBVb9JD7nBsyClbLQsBubDPEIcwg908r7Y,AQACAAE/";
+	private static final String USK_URI = "USK@some,uri/file.txt";
 
 	@Test(expected = ExecutionException.class)
 	public void throwsExceptionOnFailure() throws Exception {
@@ -70,6 +73,37 @@ public class DefaultFcpClientTest extends AbstractClientCommandTest {
 		keyPair.get();
 	}
 
+	@Test
+	public void activeSubscriptionIsRenewedWhenTheClientReconnects() throws Exception {
+		Future<Optional<UskSubscription>> uskSubscription = client().subscribeUsk().uri(USK_URI).execute();
+		connectAndAssert(() -> matchesFcpMessage("SubscribeUSK", "URI=" + USK_URI));
+		replyWithSubscribed();
+		uskSubscription.get();
+		Future<FcpKeyPair> keyPair = client().generateKeypair().execute();
+		readMessage(() -> matchesFcpMessage("GenerateSSK"));
+		closeFcpServer();
+		try {
+			keyPair.get();
+			Assert.fail();
+		} catch (ExecutionException e) {
+			/* ignore. */
+		}
+		keyPair = client().generateKeypair().execute();
+		connectAndAssert(() -> matchesFcpMessage("SubscribeUSK", "URI=" + USK_URI));
+		replyWithSubscribed();
+		readMessage(() -> matchesFcpMessage("GenerateSSK"));
+		replyWithKeyPair();
+		keyPair.get(5, TimeUnit.SECONDS);
+	}
+
+	private void replyWithSubscribed() throws IOException {
+		answer("SubscribedUSK",
+				"Identifier=" + identifier(),
+				"URI=" + USK_URI,
+				"DontPoll=false",
+				"EndMessage");
+	}
+
 	private void replyWithKeyPair() throws IOException {
 		answer("SSKKeypair",
 				"InsertURI=" + INSERT_URI + "",
@@ -1,11 +1,14 @@
 package net.pterodactylus.fcp.quelaton;
 
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 
 import net.pterodactylus.fcp.test.AbstractClientCommandTest;
@@ -94,6 +97,76 @@ public class DirectDiskAccessTest extends AbstractClientCommandTest {
 		));
 	}
 
+	@Test
+	public void concurrentUploadsFromTheSameDirectoryShareOneNegotiation() throws Exception {
+		client().clientPut().from(fileToUpload).uri("KSK@foo.txt").execute();
+		client().clientPut().from(fileToUpload).uri("KSK@foo.txt").execute();
+		connectNode();
+		String firstIdentifier = extractIdentifier(collectUntil(is("EndMessage")));
+		String secondIdentifier = extractIdentifier(collectUntil(is("EndMessage")));
+		sendDdaRequired(firstIdentifier);
+		sendDdaRequired(secondIdentifier);
+		readMessage(() -> matchesTestDDARequest(ddaFile));
+		sendTestDDAReply(ddaFile.getParent(), ddaFile);
+		readMessage(() -> matchesTestDDAResponse(ddaFile));
+		writeTestDDAComplete(ddaFile);
+		readMessage(() -> matchesFileClientPut(fileToUpload));
+		readMessage(() -> matchesFileClientPut(fileToUpload));
+	}
+
+	@Test
+	public void directoriesCanBeAuthorizedWhenConnecting() throws Exception {
+		((DefaultFcpClient) client()).authorizeDirectory(ddaFile.getParentFile(), true, false);
+		client().clientPut().from(fileToUpload).uri("KSK@foo.txt").execute();
+		connectAndAssert(() -> matchesTestDDARequest(ddaFile));
+		sendTestDDAReply(ddaFile.getParent(), ddaFile);
+		readMessage(() -> matchesTestDDAResponse(ddaFile));
+		writeTestDDAComplete(ddaFile);
+		readMessage(() -> matchesFileClientPut(fileToUpload));
+	}
+
+	@Test
+	public void negotiationsForTheSameDirectoryWithDifferentAccessDoNotOverlap() throws Exception {
+		File directory = ddaFile.getParentFile();
+		File fileToWrite = new File(directory, "test-output.dat");
+		File ddaWriteFile = new File(directory, "test-dda-write.dat");
+		ddaWriteFile.deleteOnExit();
+		client().clientPut().from(fileToUpload).uri("KSK@foo.txt").execute();
+		client().clientGet().toFile(fileToWrite).uri("KSK@foo.txt").execute();
+		connectNode();
+		List<List<String>> requests = Arrays.asList(collectUntil(is("EndMessage")), collectUntil(is("EndMessage")));
+		String clientPutIdentifier = extractIdentifier(requests.stream().filter(lines -> lines.get(0).equals("ClientPut")).findFirst().get());
+		String clientGetIdentifier = extractIdentifier(requests.stream().filter(lines -> lines.get(0).equals("ClientGet")).findFirst().get());
+		sendDdaRequired(clientPutIdentifier);
+		readMessage(() -> matchesTestDDARequest(ddaFile));
+		sendDdaRequired(clientGetIdentifier);
+		sendTestDDAReply(ddaFile.getParent(), ddaFile);
+		readMessage(() -> matchesTestDDAResponse(ddaFile));
+		writeTestDDAComplete(ddaFile);
+		requests = Arrays.asList(collectUntil(is("EndMessage")), collectUntil(is("EndMessage")));
+		assertThat(requests.stream().map(lines -> lines.get(0)).collect(toList()), containsInAnyOrder("ClientPut", "TestDDARequest"));
+		assertThat(requests.stream().filter(lines -> lines.get(0).equals("TestDDARequest")).findFirst().get(),
+				matchesFcpMessage("TestDDARequest", "Directory=" + directory, "WantReadDirectory=false", "WantWriteDirectory=true"));
+		answer("TestDDAReply", "Directory=" + directory, "WriteFilename=" + ddaWriteFile, "ContentToWrite=write-content", "EndMessage");
+		readMessage(() -> matchesFcpMessage("TestDDAResponse", "Directory=" + directory));
+		assertThat(Files.toString(ddaWriteFile, StandardCharsets.UTF_8), is("write-content"));
+		answer("TestDDAComplete", "Directory=" + directory, "WriteDirectoryAllowed=true", "EndMessage");
+		readMessage(() -> matchesFcpMessage("ClientGet", "Identifier=" + clientGetIdentifier, "Filename=" + fileToWrite));
+	}
+
+	@Test
+	public void clientPutDiskDirNegotiatesDirectDiskAccess() throws Exception {
+		File directory = ddaFile.getParentFile();
+		client().clientPutDiskDir().fromDirectory(directory).uri("CHK@").execute();
+		connectAndAssert(() -> matchesFcpMessage("ClientPutDiskDir", "Filename=" + directory));
+		sendDdaRequired(identifier());
+		readMessage(() -> matchesFcpMessage("TestDDARequest", "Directory=" + directory, "WantReadDirectory=true", "WantWriteDirectory=false"));
+		sendTestDDAReply(directory.getPath(), ddaFile);
+		readMessage(() -> matchesFcpMessage("TestDDAResponse", "Directory=" + directory, "ReadContent=test-content"));
+		answer("TestDDAComplete", "Directory=" + directory, "ReadDirectoryAllowed=true", "EndMessage");
+		readMessage(() -> matchesFcpMessage("ClientPutDiskDir", "Filename=" + directory));
+	}
+
 	private Matcher<List<String>> matchesFailedToReadResponse() {
 		return matchesFcpMessage(
 				"TestDDAResponse",
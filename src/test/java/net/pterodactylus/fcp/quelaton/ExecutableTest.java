@@ -0,0 +1,75 @@
+package net.pterodactylus.fcp.quelaton;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link Executable}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class ExecutableTest {
+
+	@Test
+	public void completionStageOfFutureIsReturnedAsIs() {
+		CompletableListenableFuture<String> future = new CompletableListenableFuture<>();
+		Executable<String> executable = () -> future;
+		assertThat(executable.executeAsync(), sameInstance(future));
+	}
+
+	@Test
+	public void otherFuturesAreAdapted() throws Exception {
+		SettableFuture<String> future = SettableFuture.create();
+		CompletableFuture<String> completableFuture = ((Executable<String>) () -> future).executeAsync().toCompletableFuture();
+		assertThat(completableFuture.isDone(), is(false));
+		future.set("result");
+		assertThat(completableFuture.get(), is("result"));
+	}
+
+	@Test
+	public void failureOfAdaptedFutureIsForwarded() throws Exception {
+		Executable<String> executable = () -> Futures.immediateFailedFuture(new IOException());
+		try {
+			executable.executeAsync().toCompletableFuture().get();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(IOException.class));
+			return;
+		}
+		throw new AssertionError("no exception thrown");
+	}
+
+	@Test
+	public void commandWithTimeoutFailsWithTimeoutException() throws Exception {
+		CompletableListenableFuture<String> future = new CompletableListenableFuture<>();
+		Executable<String> executable = () -> future;
+		try {
+			executable.withTimeout(50, TimeUnit.MILLISECONDS).execute().get(1, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(TimeoutException.class));
+			return;
+		}
+		throw new AssertionError("no exception thrown");
+	}
+
+	@Test
+	public void otherFuturesAreCancelledWhenTheTimeoutExpires() throws Exception {
+		SettableFuture<String> future = SettableFuture.create();
+		Executable<String> executable = () -> future;
+		executable.withTimeout(50, TimeUnit.MILLISECONDS).execute();
+		Thread.sleep(500);
+		assertThat(future.isCancelled(), is(true));
+	}
+
+}
@@ -1,17 +1,31 @@
 package net.pterodactylus.fcp.quelaton;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import net.pterodactylus.fcp.AllData;
@@ -56,6 +70,7 @@ import net.pterodactylus.fcp.UnknownNodeIdentifier;
 import net.pterodactylus.fcp.UnknownPeerNoteType;
 
 import org.junit.Test;
+import org.mockito.ArgumentMatcher;
 
 /**
  * Unit test for {@link FcpDialog}.
@@ -65,8 +80,10 @@ import org.junit.Test;
 public class FcpDialogTest {
 
 	private final FcpConnection fcpConnection = mock(FcpConnection.class);
+	private final FcpMessageRouter messageRouter = new FcpMessageRouter(fcpConnection);
+	private final ConnectionSupplier connectionSupplier = () -> messageRouter;
 	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
-	private final TestFcpDialog dialog = new TestFcpDialog(executorService, fcpConnection);
+	private final TestFcpDialog dialog = new TestFcpDialog(executorService, connectionSupplier);
 	private final FcpMessage fcpMessage = new FcpMessage("Test");
 
 	@Test
@@ -77,7 +94,7 @@ public class FcpDialogTest {
 	}
 
 	private FcpDialog createBasicDialog() {
-		return new FcpDialog(executorService, fcpConnection, true) {
+		return new FcpDialog(executorService, connectionSupplier, true) {
 			{
 				finish();
 			}
@@ -85,18 +102,87 @@ public class FcpDialogTest {
 	}
 
 	@Test
-	public void sendingAMessageRegistersTheWaiterAsFcpListener() throws IOException {
-		FcpDialog dialog = createBasicDialog();
-		dialog.send(fcpMessage);
-		verify(fcpConnection).addFcpListener(dialog);
+	public void sendingAMessageRegistersTheDialogWithTheMessageRouter() throws IOException, ExecutionException, InterruptedException {
+		dialog.setExpectedMessage("Peer");
+		FcpMessage message = new FcpMessage("Test").put("Identifier", "id");
+		Future<Boolean> result = dialog.send(message);
+		verify(fcpConnection, timeout(1000)).sendMessage(message);
+		messageRouter.receivedPeer(fcpConnection, new Peer(new FcpMessage("Peer").put("Identifier", "id")));
+		assertThat(result.get(), is(true));
 	}
 
 	@Test
-	public void closingTheReplyWaiterRemovesTheFcpListener() throws IOException {
-		FcpDialog dialog = createBasicDialog();
-		dialog.send(fcpMessage);
+	public void closingTheDialogUnregistersItFromTheMessageRouter() throws IOException {
+		dialog.setExpectedMessage("Peer");
+		FcpMessage message = new FcpMessage("Test").put("Identifier", "id");
+		Future<Boolean> result = dialog.send(message);
+		verify(fcpConnection, timeout(1000)).sendMessage(message);
 		dialog.close();
-		verify(fcpConnection).removeFcpListener(dialog);
+		messageRouter.receivedPeer(fcpConnection, new Peer(new FcpMessage("Peer").put("Identifier", "id")));
+		assertThat(result.isDone(), is(false));
+	}
+
+	@Test
+	public void changingTheIdentifierRegistersTheDialogUnderTheNewIdentifier() throws IOException, ExecutionException, InterruptedException {
+		TestFcpDialog testFcpDialog = new TestFcpDialog(executorService, connectionSupplier) {
+			@Override
+			protected void consumeProtocolError(ProtocolError protocolError) {
+				setIdentifier("/some/directory");
+			}
+		};
+		testFcpDialog.setExpectedMessage("TestDDAComplete");
+		FcpMessage message = new FcpMessage("Test").put("Identifier", "id");
+		Future<Boolean> result = testFcpDialog.send(message);
+		verify(fcpConnection, timeout(1000)).sendMessage(message);
+		messageRouter.receivedProtocolError(fcpConnection, new ProtocolError(new FcpMessage("ProtocolError").put("Identifier", "id")));
+		messageRouter.receivedTestDDAComplete(fcpConnection, new TestDDAComplete(new FcpMessage("TestDDAComplete").put("Directory", "/some/directory")));
+		assertThat(result.get(), is(true));
+	}
+
+	@Test
+	public void finishedDialogUnregistersItselfFromTheMessageRouter() throws IOException, ExecutionException, InterruptedException {
+		AtomicInteger receivedPeers = new AtomicInteger();
+		TestFcpDialog testFcpDialog = new TestFcpDialog(executorService, connectionSupplier) {
+			@Override
+			protected void consumePeer(Peer peer) {
+				receivedPeers.incrementAndGet();
+				super.consumePeer(peer);
+			}
+		};
+		testFcpDialog.setExpectedMessage("Peer");
+		FcpMessage message = new FcpMessage("Test").put("Identifier", "id");
+		Future<Boolean> result = testFcpDialog.send(message);
+		verify(fcpConnection, timeout(1000)).sendMessage(message);
+		messageRouter.receivedPeer(fcpConnection, new Peer(new FcpMessage("Peer").put("Identifier", "id")));
+		assertThat(result.get(), is(true));
+		messageRouter.receivedPeer(fcpConnection, new Peer(new FcpMessage("Peer").put("Identifier", "id")));
+		assertThat(receivedPeers.get(), is(1));
+	}
+
+	@Test
+	public void waitingDialogsDoNotOccupyAThreadOfTheExecutor() throws IOException, ExecutionException, InterruptedException, TimeoutException {
+		dialog.setExpectedMessage("Peer");
+		TestFcpDialog secondDialog = new TestFcpDialog(executorService, connectionSupplier);
+		secondDialog.setExpectedMessage("Peer");
+		Future<Boolean> firstResult = dialog.send(new FcpMessage("Test").put("Identifier", "id1"));
+		Future<Boolean> secondResult = secondDialog.send(new FcpMessage("Test").put("Identifier", "id2"));
+		createBasicDialog().send(fcpMessage).get(1, TimeUnit.SECONDS);
+		assertThat(firstResult.isDone(), is(false));
+		assertThat(secondResult.isDone(), is(false));
+	}
+
+	@Test
+	public void failureToObtainAConnectionFailsTheDialog() {
+		IOException ioException = new IOException();
+		TestFcpDialog testFcpDialog = new TestFcpDialog(executorService, () -> {
+			throw ioException;
+		});
+		try {
+			testFcpDialog.send(fcpMessage).get();
+			fail();
+		} catch (ExecutionException | InterruptedException e) {
+			assertThat(e.getCause(), sameInstance(ioException));
+		}
 	}
 
 	private <M extends BaseMessage> void waitForASpecificMessage(MessageReceiver<M> messageReceiver, Class<M> messageClass, MessageCreator<M> messageCreator) throws IOException, InterruptedException, ExecutionException {
@@ -324,7 +410,7 @@ public class FcpDialogTest {
 
 	@Test
 	public void waitingForMultipleMessagesWorks() throws IOException, ExecutionException, InterruptedException {
-		TestFcpDialog testFcpDialog = new TestFcpDialog(executorService, fcpConnection) {
+		TestFcpDialog testFcpDialog = new TestFcpDialog(executorService, connectionSupplier) {
 			private final AtomicBoolean gotPutFailed = new AtomicBoolean();
 			private final AtomicBoolean gotGetFailed = new AtomicBoolean();
 
@@ -378,12 +464,115 @@ public class FcpDialogTest {
 
 	}
 
+	@Test
+	public void dialogFailsWhenTheCommandTimeoutExpires() throws InterruptedException {
+		TestFcpDialog dialog = new TestFcpDialog(executorService, connectionSupplierWithTimeout(100));
+		dialog.setExpectedMessage("Peer");
+		Future<Boolean> result = dialog.send(new FcpMessage("Test").put("Identifier", "id"));
+		try {
+			result.get(1, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(TimeoutException.class));
+		} catch (TimeoutException e) {
+			fail();
+		}
+		assertThat(messageRouter.getInFlightRequests(), is(0));
+	}
+
+	@Test
+	public void timedOutPersistentRequestIsRemovedFromTheNode() throws IOException {
+		TestFcpDialog dialog = new TestFcpDialog(executorService, connectionSupplierWithTimeout(100));
+		dialog.setExpectedMessage("Peer");
+		dialog.send(new FcpMessage("ClientPut").put("Identifier", "id").put("Persistence", "forever").put("Global", "true"));
+		verify(fcpConnection, timeout(1000)).sendMessage(argThat(isRemovePersistentRequest("id", true)));
+	}
+
+	@Test
+	public void timedOutCommandThatIsNotARequestIsNotRemovedFromTheNode() throws IOException, InterruptedException {
+		TestFcpDialog dialog = new TestFcpDialog(executorService, connectionSupplierWithTimeout(100));
+		dialog.setExpectedMessage("Peer");
+		Future<Boolean> result = dialog.send(new FcpMessage("GetNode").put("Identifier", "id"));
+		while (!result.isDone()) {
+			Thread.sleep(10);
+		}
+		executorService.shutdown();
+		executorService.awaitTermination(1, TimeUnit.SECONDS);
+		verify(fcpConnection, never()).sendMessage(argThat(isRemovePersistentRequest("id", false)));
+	}
+
+	@Test
+	public void cancelledRequestIsRemovedFromTheNode() throws IOException {
+		dialog.setExpectedMessage("AllData");
+		FcpMessage clientGet = new FcpMessage("ClientGet").put("Identifier", "id");
+		Future<Boolean> result = dialog.send(clientGet);
+		verify(fcpConnection, timeout(1000)).sendMessage(clientGet);
+		result.cancel(false);
+		verify(fcpConnection, timeout(1000)).sendMessage(argThat(isRemovePersistentRequest("id", false)));
+	}
+
+	@Test
+	public void requestIsNeverRemovedBeforeItHasBeenSent() throws IOException, InterruptedException {
+		List<String> sentMessages = Collections.synchronizedList(new ArrayList<>());
+		doAnswer(invocation -> sentMessages.add(((FcpMessage) invocation.getArguments()[0]).getName() + "/" + ((FcpMessage) invocation.getArguments()[0]).getField("Identifier")))
+				.when(fcpConnection).sendMessage(any(FcpMessage.class));
+		ExecutorService executorService = Executors.newCachedThreadPool();
+		for (int index = 0; index < 500; index++) {
+			TestFcpDialog dialog = new TestFcpDialog(executorService, connectionSupplier);
+			dialog.setExpectedMessage("AllData");
+			dialog.send(new FcpMessage("ClientGet").put("Identifier", "id-" + index)).cancel(false);
+		}
+		executorService.shutdown();
+		executorService.awaitTermination(10, TimeUnit.SECONDS);
+		for (int index = 0; index < 500; index++) {
+			int clientGet = sentMessages.indexOf("ClientGet/id-" + index);
+			int removePersistentRequest = sentMessages.indexOf("RemovePersistentRequest/id-" + index);
+			assertThat("id-" + index, removePersistentRequest, (clientGet == -1) ? is(-1) : greaterThan(clientGet));
+		}
+	}
+
+	@Test
+	public void cancelledDialogIsReleasedImmediately() throws IOException {
+		dialog.setExpectedMessage("Peer");
+		FcpMessage message = new FcpMessage("ClientGet").put("Identifier", "id");
+		Future<Boolean> result = dialog.send(message);
+		verify(fcpConnection, timeout(1000)).sendMessage(message);
+		result.cancel(false);
+		assertThat(messageRouter.getInFlightRequests(), is(0));
+	}
+
+	private ConnectionSupplier connectionSupplierWithTimeout(long timeout) {
+		return new ConnectionSupplier() {
+			@Override
+			public FcpMessageRouter get() {
+				return messageRouter;
+			}
+
+			@Override
+			public long getCommandTimeout() {
+				return timeout;
+			}
+		};
+	}
+
+	private static ArgumentMatcher<FcpMessage> isRemovePersistentRequest(String identifier, boolean global) {
+		return new ArgumentMatcher<FcpMessage>() {
+			@Override
+			public boolean matches(Object argument) {
+				FcpMessage fcpMessage = (FcpMessage) argument;
+				return fcpMessage.getName().equals("RemovePersistentRequest")
+						&& identifier.equals(fcpMessage.getField("Identifier"))
+						&& String.valueOf(global).equals(fcpMessage.getField("Global"));
+			}
+		};
+	}
+
 	private static class TestFcpDialog extends FcpDialog<Boolean> {
 
 		private final AtomicReference<String> expectedMessage = new AtomicReference<>();
 
-		public TestFcpDialog(ExecutorService executorService, FcpConnection fcpConnection) {
-			super(executorService, fcpConnection, false);
+		public TestFcpDialog(ExecutorService executorService, ConnectionSupplier connectionSupplier) {
+			super(executorService, connectionSupplier, false);
 		}
 
 		public void setExpectedMessage(String expectedMessage) {
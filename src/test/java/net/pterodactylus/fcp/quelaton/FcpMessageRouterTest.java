@@ -0,0 +1,170 @@
+package net.pterodactylus.fcp.quelaton;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.pterodactylus.fcp.CloseConnectionDuplicateClientName;
+import net.pterodactylus.fcp.FcpConnection;
+import net.pterodactylus.fcp.FcpListener;
+import net.pterodactylus.fcp.FcpMessage;
+import net.pterodactylus.fcp.NodeHello;
+import net.pterodactylus.fcp.Peer;
+import net.pterodactylus.fcp.TestDDAReply;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link FcpMessageRouter}.
+ *
+ * @author <a href="mailto:bombe@pterodactylus.net">David ‘Bombe’ Roden</a>
+ */
+public class FcpMessageRouterTest {
+
+	private final FcpConnection fcpConnection = mock(FcpConnection.class);
+	private final FcpMessageRouter messageRouter = new FcpMessageRouter(fcpConnection);
+	private final FcpListener firstListener = mock(FcpListener.class);
+	private final FcpListener secondListener = mock(FcpListener.class);
+
+	@Test
+	public void routerRegistersItselfWithTheConnection() {
+		verify(fcpConnection).addFcpListener(messageRouter);
+	}
+
+	@Test
+	public void messageIsOnlyRoutedToListenerWithMatchingIdentifier() {
+		messageRouter.register("id1", firstListener);
+		messageRouter.register("id2", secondListener);
+		Peer peer = new Peer(new FcpMessage("Peer").put("Identifier", "id1"));
+		messageRouter.receivedPeer(fcpConnection, peer);
+		verify(firstListener).receivedPeer(fcpConnection, peer);
+		verify(secondListener, never()).receivedPeer(any(FcpConnection.class), any(Peer.class));
+	}
+
+	@Test
+	public void messageIsRoutedToAllListenersWithTheSameIdentifier() {
+		messageRouter.register("id1", firstListener);
+		messageRouter.register("id1", secondListener);
+		Peer peer = new Peer(new FcpMessage("Peer").put("Identifier", "id1"));
+		messageRouter.receivedPeer(fcpConnection, peer);
+		verify(firstListener).receivedPeer(fcpConnection, peer);
+		verify(secondListener).receivedPeer(fcpConnection, peer);
+	}
+
+	@Test
+	public void unregisteredListenerDoesNotReceiveMessages() {
+		messageRouter.register("id1", firstListener);
+		messageRouter.unregister("id1", firstListener);
+		messageRouter.receivedPeer(fcpConnection, new Peer(new FcpMessage("Peer").put("Identifier", "id1")));
+		verify(firstListener, never()).receivedPeer(any(FcpConnection.class), any(Peer.class));
+	}
+
+	@Test
+	public void testDdaMessagesAreRoutedByDirectory() {
+		messageRouter.register("/some/directory", firstListener);
+		TestDDAReply testDDAReply = new TestDDAReply(new FcpMessage("TestDDAReply").put("Directory", "/some/directory"));
+		messageRouter.receivedTestDDAReply(fcpConnection, testDDAReply);
+		verify(firstListener).receivedTestDDAReply(fcpConnection, testDDAReply);
+	}
+
+	@Test
+	public void messageWithoutIdentifierIsRoutedToListenersWithoutIdentifier() {
+		messageRouter.register(null, firstListener);
+		messageRouter.register("id1", secondListener);
+		NodeHello nodeHello = new NodeHello(new FcpMessage("NodeHello"));
+		messageRouter.receivedNodeHello(fcpConnection, nodeHello);
+		verify(firstListener).receivedNodeHello(fcpConnection, nodeHello);
+		verify(secondListener, never()).receivedNodeHello(any(FcpConnection.class), any(NodeHello.class));
+	}
+
+	@Test
+	public void unknownMessageIsRoutedByIdentifier() {
+		messageRouter.register("id1", firstListener);
+		messageRouter.register("id2", secondListener);
+		FcpMessage fcpMessage = new FcpMessage("SomeFcpMessage").put("Identifier", "id2");
+		messageRouter.receivedMessage(fcpConnection, fcpMessage);
+		verify(firstListener, never()).receivedMessage(any(FcpConnection.class), any(FcpMessage.class));
+		verify(secondListener).receivedMessage(fcpConnection, fcpMessage);
+	}
+
+	@Test
+	public void connectionClosedIsSentToAllListeners() {
+		messageRouter.register("id1", firstListener);
+		messageRouter.register(null, secondListener);
+		Throwable throwable = new Throwable();
+		messageRouter.connectionClosed(fcpConnection, throwable);
+		verify(firstListener).connectionClosed(fcpConnection, throwable);
+		verify(secondListener).connectionClosed(fcpConnection, throwable);
+	}
+
+	@Test
+	public void duplicateClientNameIsSentToAllListeners() {
+		messageRouter.register("id1", firstListener);
+		messageRouter.register("id2", secondListener);
+		CloseConnectionDuplicateClientName closeConnectionDuplicateClientName =
+			new CloseConnectionDuplicateClientName(new FcpMessage("CloseConnectionDuplicateClientName"));
+		messageRouter.receivedCloseConnectionDuplicateClientName(fcpConnection, closeConnectionDuplicateClientName);
+		verify(firstListener).receivedCloseConnectionDuplicateClientName(fcpConnection, closeConnectionDuplicateClientName);
+		verify(secondListener).receivedCloseConnectionDuplicateClientName(fcpConnection, closeConnectionDuplicateClientName);
+	}
+
+	@Test
+	public void messagesQueuedWhileWritingAreWrittenByTheWritingThread() throws Exception {
+		FcpMessage firstMessage = new FcpMessage("First");
+		FcpMessage secondMessage = new FcpMessage("Second");
+		CountDownLatch firstMessageWriting = new CountDownLatch(1);
+		CountDownLatch secondMessageQueued = new CountDownLatch(1);
+		List<String> writingThreads = new CopyOnWriteArrayList<>();
+		doAnswer(invocation -> {
+			writingThreads.add(Thread.currentThread().getName());
+			if (invocation.getArguments()[0] == firstMessage) {
+				firstMessageWriting.countDown();
+				secondMessageQueued.await();
+			}
+			return null;
+		}).when(fcpConnection).sendMessage(any(FcpMessage.class));
+		Thread writer = new Thread(() -> {
+			try {
+				messageRouter.sendMessage(firstMessage);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}, "writer");
+		writer.start();
+		firstMessageWriting.await();
+		messageRouter.sendMessage(secondMessage);
+		secondMessageQueued.countDown();
+		writer.join(TimeUnit.SECONDS.toMillis(1));
+		assertThat(writingThreads, contains("writer", "writer"));
+	}
+
+	@Test
+	public void failedWriteClosesTheConnectionAndIsSentToAllListeners() throws IOException {
+		IOException ioException = new IOException();
+		messageRouter.register("id1", firstListener);
+		FcpMessage fcpMessage = new FcpMessage("Message");
+		doThrow(ioException).when(fcpConnection).sendMessage(fcpMessage);
+		try {
+			messageRouter.sendMessage(fcpMessage);
+			fail();
+		} catch (IOException e) {
+			assertThat(e, sameInstance(ioException));
+		}
+		verify(fcpConnection).close();
+		verify(firstListener).connectionClosed(fcpConnection, ioException);
+	}
+
+}
@@ -4,6 +4,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.nullValue;
 
 import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.Future;
 
@@ -34,6 +35,14 @@ public class FcpPluginMessageCommandTest extends AbstractClientCommandTest {
 		assertThat(executed.get(), nullValue());
 	}
 
+	@Test
+	public void defaultClientCanSendMessageWithDataFromBufferToPlugin() throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap("Hello\n".getBytes());
+		Future<Void> executed = client().fcpPluginMessage().parameter("key", "value").withData(buffer).forPlugin("foo.bar.Plugin").execute();
+		connectAndAssert("Hello", this::matchesFcpPluginMessageWithData);
+		assertThat(executed.get(), nullValue());
+	}
+
 	private Matcher<List<String>> matchesFcpPluginMessage() {
 		return matchesFcpMessage("FCPPluginMessage", "Param.key=value");
 	}
@@ -3,9 +3,11 @@ package net.pterodactylus.fcp.quelaton;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 import java.util.List;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import net.pterodactylus.fcp.ConfigData;
 import net.pterodactylus.fcp.test.AbstractConfigCommandTest;
@@ -92,6 +94,39 @@ public class GetConfigCommandTest extends AbstractConfigCommandTest {
 		assertThat(configData.get().getDataType("foo"), is("number"));
 	}
 
+	@Test
+	public void cachedConfigDataIsReturnedWithoutAskingTheNode() throws Exception {
+		((DefaultFcpClient) client()).cacheResults(GetConfigCommand.class, 1, TimeUnit.MINUTES, 10);
+		Future<ConfigData> configData = client().getConfig().withCurrent().execute();
+		connectAndAssert(() -> matchesGetConfigWithAdditionalParameter("WithCurrent"));
+		replyWithConfigData("current.foo=bar");
+		assertThat(client().getConfig().withCurrent().execute().get(), sameInstance(configData.get()));
+		client().getConfig().withDefaults().execute();
+		readMessage(() -> matchesGetConfigWithAdditionalParameter("WithDefaults"));
+	}
+
+	@Test
+	public void modifyingTheConfigInvalidatesCachedConfigData() throws Exception {
+		((DefaultFcpClient) client()).cacheResults(GetConfigCommand.class, 1, TimeUnit.MINUTES, 10);
+		Future<ConfigData> configData = client().getConfig().withCurrent().execute();
+		connectAndAssert(() -> matchesGetConfigWithAdditionalParameter("WithCurrent"));
+		replyWithConfigData("current.foo=bar");
+		configData.get();
+		Future<ConfigData> modifiedConfigData = client().modifyConfig().set("foo").to("baz").execute();
+		readMessage(() -> matchesFcpMessage("ModifyConfig", "Identifier=" + identifier(), "foo=baz"));
+		replyWithConfigData("current.foo=baz");
+		modifiedConfigData.get();
+		configData = client().getConfig().withCurrent().execute();
+		readMessage(() -> matchesGetConfigWithAdditionalParameter("WithCurrent"));
+		replyWithConfigData("current.foo=baz");
+		assertThat(configData.get().getCurrent("foo"), is("baz"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void resultsOfOtherCommandsCanNotBeCached() {
+		((DefaultFcpClient) client()).cacheResults(ClientGetCommand.class, 1, TimeUnit.MINUTES, 10);
+	}
+
 	private Matcher<List<String>> matchesGetConfigWithAdditionalParameter(String additionalParameter) {
 		return matchesFcpMessage(
 				"GetConfig",
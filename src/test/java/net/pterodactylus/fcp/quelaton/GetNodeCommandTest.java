@@ -1,11 +1,18 @@
 package net.pterodactylus.fcp.quelaton;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
 
 import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import net.pterodactylus.fcp.NodeData;
 import net.pterodactylus.fcp.test.AbstractClientCommandTest;
@@ -54,6 +61,38 @@ public class GetNodeCommandTest extends AbstractClientCommandTest {
 		assertThat(nodeData.get().getVolatile("freeJavaMemory"), is("205706528"));
 	}
 
+	@Test
+	public void defaultFcpClientCanGetNodeInformationAsynchronously() throws Exception {
+		CompletionStage<NodeData> nodeData = client().getNode().executeAsync();
+		connectAndAssert(() -> matchesGetNode(false, false, false));
+		replyWithNodeData();
+		assertThat(nodeData.toCompletableFuture().get().getVersion().toString(), is("Fred,0.7,1.0,1466"));
+	}
+
+	@Test
+	public void concurrentIdenticalRequestsShareOneDialog() throws Exception {
+		Future<NodeData> firstNodeData = client().getNode().execute();
+		Future<NodeData> secondNodeData = client().getNode().execute();
+		connectAndAssert(() -> matchesGetNode(false, false, false));
+		replyWithNodeData();
+		assertThat(firstNodeData.get(), sameInstance(secondNodeData.get()));
+		client().getNode().includeVolatile().execute();
+		readMessage(() -> matchesGetNode(false, false, true));
+	}
+
+	@Test
+	public void getNodeFailsWhenTheCommandTimeoutOfTheClientExpires() throws Exception {
+		((DefaultFcpClient) client()).setCommandTimeout(100, TimeUnit.MILLISECONDS);
+		Future<NodeData> nodeData = client().getNode().execute();
+		connectAndAssert(() -> matchesGetNode(false, false, false));
+		try {
+			nodeData.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertThat(e.getCause(), instanceOf(TimeoutException.class));
+		}
+	}
+
 	private Matcher<List<String>> matchesGetNode(boolean withOpennetRef, boolean withPrivate, boolean withVolatile) {
 		return matchesFcpMessage(
 				"GetNode",
@@ -2,12 +2,14 @@ package net.pterodactylus.fcp.quelaton;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import net.pterodactylus.fcp.Peer;
 import net.pterodactylus.fcp.test.AbstractPeerCommandTest;
@@ -54,6 +56,22 @@ public class ListPeerCommandTest extends AbstractPeerCommandTest {
 		assertThat(peer.get().isPresent(), is(false));
 	}
 
+	@Test
+	public void mirroredPeersAreListedWithoutAskingTheNode() throws InterruptedException, ExecutionException, IOException {
+		Future<Void> loaded = ((DefaultFcpClient) client()).mirrorPeers(1, TimeUnit.HOURS);
+		connectAndAssert(() -> matchesFcpMessage("ListPeers", "WithMetadata=true", "WithVolatile=true"));
+		replyWithPeer("id1", "myName=FriendNode");
+		answer("EndListPeers", "Identifier=" + identifier(), "EndMessage");
+		loaded.get();
+		Peer peer = client().listPeer().byName("FriendNode").execute().get().get();
+		assertThat(peer.getIdentity(), is("id1"));
+		assertThat(client().listPeer().byIdentity("id1").execute().get().get(), sameInstance(peer));
+		Future<Optional<Peer>> unknownPeer = client().listPeer().byIdentity("id2").execute();
+		readMessage(() -> matchesListPeer("id2"));
+		replyWithUnknownNodeIdentifier();
+		assertThat(unknownPeer.get().isPresent(), is(false));
+	}
+
 	private Matcher<List<String>> matchesListPeer(String nodeId) {
 		return matchesFcpMessage(
 				"ListPeer",
@@ -4,12 +4,15 @@ import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import net.pterodactylus.fcp.Peer;
 import net.pterodactylus.fcp.test.AbstractPeerCommandTest;
@@ -57,6 +60,20 @@ public class ListPeersCommandTest extends AbstractPeerCommandTest {
 		assertThat(peers.get().stream().map(peer -> peer.getVolatile("foo")).collect(toList()), containsInAnyOrder("bar1", "bar2"));
 	}
 
+	@Test
+	public void peersAreStreamedBeforeTheListIsComplete() throws InterruptedException, ExecutionException, IOException {
+		BlockingQueue<Peer> receivedPeers = new LinkedBlockingQueue<>();
+		Future<Integer> peerCount = client().listPeers().includeMetadata().forEach(receivedPeers::add).execute();
+		connectAndAssert(() -> matchesListPeers(false, true));
+		replyWithPeer("id1");
+		assertThat(receivedPeers.take().getIdentity(), is("id1"));
+		assertThat(peerCount.isDone(), is(false));
+		replyWithPeer("id2");
+		assertThat(receivedPeers.take().getIdentity(), is("id2"));
+		sendEndOfPeerList();
+		assertThat(peerCount.get(), is(2));
+	}
+
 	private Matcher<List<String>> matchesListPeers(boolean withVolatile, boolean withMetadata) {
 		return matchesFcpMessage(
 				"ListPeers",
@@ -0,0 +1,30 @@
+package net.pterodactylus.fcp.quelaton
+
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+
+/**
+ * Unit test for [Backoff].
+ */
+class BackoffTest {
+
+	@Test
+	fun `delay doubles with every failed attempt`() {
+		val backoff = Backoff(100, 30_000) { 1.0 }
+		assertThat((1..4).map(backoff::delay), contains(100L, 200L, 400L, 800L))
+	}
+
+	@Test
+	fun `delay does not exceed the maximum delay`() {
+		val backoff = Backoff(100, 1_000) { 1.0 }
+		assertThat(backoff.delay(64), equalTo(1_000L))
+	}
+
+	@Test
+	fun `jitter picks a delay from the upper half of the range`() {
+		assertThat(Backoff(100, 30_000) { 0.0 }.delay(3), equalTo(200L))
+		assertThat(Backoff(100, 30_000) { 0.5 }.delay(3), equalTo(300L))
+	}
+
+}
@@ -0,0 +1,81 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import java.util.concurrent.*
+
+/**
+ * Unit test for [BoundedPipeline].
+ */
+class BoundedPipelineTest {
+
+	private val directExecutor = Executor(Runnable::run)
+	private val futures = LinkedHashMap<Int, SettableFuture<String>>()
+	private val discarded = mutableListOf<String>()
+
+	private fun createPipeline(items: Iterable<Int>, maximumInFlight: Int, maximumBuffered: Int, ordered: Boolean) =
+			BoundedPipeline(directExecutor, items.iterator(), maximumInFlight, maximumBuffered, ordered,
+					{ item -> SettableFuture.create<String>().also { futures[item] = it } },
+					{ item, result, _ -> "$item:$result" },
+					{ discarded += it })
+
+	@Test
+	fun `no more than the maximum number of items are in flight`() {
+		val results = createPipeline(1..5, 2, 10, false).start().iterator()
+		assertThat(futures.keys, contains(1, 2))
+		futures[2]!!.set("b")
+		assertThat(futures.keys, contains(1, 2, 3))
+		assertThat(results.next(), equalTo("2:b"))
+	}
+
+	@Test
+	fun `no items are started while the buffer is full`() {
+		val results = createPipeline(1..3, 2, 1, false).start().iterator()
+		futures[1]!!.set("a")
+		assertThat(futures.keys, contains(1, 2))
+		assertThat(results.next(), equalTo("1:a"))
+		assertThat(futures.keys, contains(1, 2, 3))
+	}
+
+	@Test
+	fun `ordered results are held back until all earlier results are finished`() {
+		val results = createPipeline(1..3, 3, 3, true).start().iterator()
+		futures[3]!!.set("c")
+		futures[2]!!.set("b")
+		futures[1]!!.set("a")
+		assertThat(listOf(results.next(), results.next(), results.next()), contains("1:a", "2:b", "3:c"))
+		assertThat(results.hasNext(), equalTo(false))
+	}
+
+	@Test
+	fun `unordered results are returned as they finish`() {
+		val results = createPipeline(1..2, 2, 2, false).start().iterator()
+		futures[2]!!.set("b")
+		futures[1]!!.set("a")
+		assertThat(listOf(results.next(), results.next()), contains("2:b", "1:a"))
+		assertThat(results.hasNext(), equalTo(false))
+	}
+
+	@Test
+	fun `closing the stream cancels items in flight and discards waiting results`() {
+		val stream = createPipeline(1..3, 2, 2, true).start()
+		val results = stream.iterator()
+		futures[2]!!.set("b")
+		stream.close()
+		assertThat(futures[1]!!.isCancelled, equalTo(true))
+		assertThat(futures[3]!!.isCancelled, equalTo(true))
+		assertThat(discarded, containsInAnyOrder("1:null", "2:b", "3:null"))
+		assertThat(results.hasNext(), equalTo(false))
+	}
+
+	@Test
+	fun `failing items are completed with their failure`() {
+		val pipeline = BoundedPipeline(directExecutor, listOf(1).iterator(), 1, 1, false,
+				{ Futures.immediateFailedFuture<String>(IllegalStateException()) },
+				{ _, _, failure -> failure })
+		assertThat(pipeline.start().iterator().next(), instanceOf(IllegalStateException::class.java))
+	}
+
+}
@@ -0,0 +1,87 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.*
+import net.pterodactylus.fcp.quelaton.BulkFetchCommand.*
+import net.pterodactylus.fcp.test.*
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import java.util.stream.*
+
+/**
+ * Unit test for [BulkFetchCommand].
+ */
+class BulkFetchCommandTest : AbstractClientCommandTest() {
+
+	@Test
+	fun orderedResultsAreReturnedInTheOrderOfTheKeys() {
+		val results = client().bulkFetch().ordered()
+				.uris(Stream.of("KSK@1", "KSK@2", "KSK@3"))
+				.execute().get().iterator()
+		connectNode()
+		val identifiers = (1..3).map { readClientGet() }.toMap()
+		replyWithAllData(identifiers["KSK@3"]!!, "Three")
+		replyWithAllData(identifiers["KSK@1"]!!, "One")
+		replyWithGetFailed(identifiers["KSK@2"]!!)
+		assertThat(results.next().text(), equalTo("One"))
+		assertThat(results.next().data, nullValue())
+		assertThat(results.next().text(), equalTo("Three"))
+		assertThat(results.hasNext(), equalTo(false))
+	}
+
+	@Test
+	fun nextKeyIsRequestedWhenARequestHasFinished() {
+		val results = client().bulkFetch().maximumInFlight(1)
+				.uris(Stream.of("KSK@1", "KSK@2"))
+				.execute().get().iterator()
+		connectNode()
+		val (firstUri, firstIdentifier) = readClientGet()
+		assertThat(firstUri, equalTo("KSK@1"))
+		replyWithAllData(firstIdentifier, "One")
+		assertThat(results.next().text(), equalTo("One"))
+		val (secondUri, secondIdentifier) = readClientGet()
+		assertThat(secondUri, equalTo("KSK@2"))
+		replyWithAllData(secondIdentifier, "Two")
+		assertThat(results.next().text(), equalTo("Two"))
+		assertThat(results.hasNext(), equalTo(false))
+	}
+
+	@Test
+	fun maximumSizeAndPriorityAreSetPerItem() {
+		client().bulkFetch()
+				.items(Stream.of(Item("KSK@1", 1024L, Priority.interactive)))
+				.execute().get()
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@1", "MaxSize=1024", "PriorityClass=1") }
+	}
+
+	private fun readClientGet() =
+			collectUntil(equalTo("EndMessage"))
+					.also { assertThat(it, hasHead("ClientGet")) }
+					.let { lines -> lines.first { it.startsWith("URI=") }.substring(4) to extractIdentifier(lines) }
+
+	private fun replyWithGetFailed(identifier: String) {
+		answer(
+				"GetFailed",
+				"Identifier=$identifier",
+				"Code=13",
+				"EndMessage"
+		)
+	}
+
+	private fun replyWithAllData(identifier: String, text: String) {
+		answer(
+				"AllData",
+				"Identifier=$identifier",
+				"DataLength=" + (text.length + 1),
+				"StartupTime=1435610539000",
+				"CompletionTime=1435610540000",
+				"Metadata.ContentType=text/plain",
+				"Data",
+				text
+		)
+	}
+
+	private fun Retrieved.text() =
+			data!!.inputStream.bufferedReader().use { it.readLine() }
+
+}
@@ -0,0 +1,86 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.quelaton.BulkInsertCommand.*
+import net.pterodactylus.fcp.test.*
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import java.nio.*
+import java.util.concurrent.atomic.*
+import java.util.stream.*
+
+/**
+ * Unit test for [BulkInsertCommand].
+ */
+class BulkInsertCommandTest : AbstractClientPutCommandTest() {
+
+	@Test
+	fun itemsAreInsertedWithinTheWindowAndReturnedWithTheirKeys() {
+		val results = client().bulkInsert()
+				.maximumInFlight(2)
+				.items(Stream.of(createItem("KSK@1"), createItem("KSK@2"), createItem("KSK@3")))
+				.execute().get().iterator()
+		connectNode()
+		val firstInsert = readClientPut()
+		val secondInsert = readClientPut()
+		replyWithPutSuccessful(extractIdentifier(firstInsert))
+		val thirdInsert = readClientPut()
+		assertThat(listOf(firstInsert, secondInsert, thirdInsert).map(this::extractUri), containsInAnyOrder("KSK@1", "KSK@2", "KSK@3"))
+		assertThat(results.next().uri, equalTo(extractUri(firstInsert)))
+		replyWithPutSuccessful(extractIdentifier(secondInsert))
+		replyWithPutSuccessful(extractIdentifier(thirdInsert))
+		val remainingResults = listOf(results.next(), results.next())
+		assertThat(results.hasNext(), equalTo(false))
+		assertThat(remainingResults.map { it.key?.key }, contains("KSK@foo.txt", "KSK@foo.txt"))
+		assertThat(remainingResults.last().throughput.inserted, equalTo(3L))
+		assertThat(remainingResults.last().throughput.bytes, equalTo(18L))
+	}
+
+	@Test
+	fun noMoreInsertsAreStartedWhileTooManyResultsAreWaiting() {
+		val takenItems = AtomicInteger()
+		val results = client().bulkInsert()
+				.maximumInFlight(1)
+				.items(Stream.of(createItem("KSK@1"), createItem("KSK@2"), createItem("KSK@3")).peek { takenItems.incrementAndGet() })
+				.execute().get().iterator()
+		connectNode()
+		replyWithPutSuccessful(extractIdentifier(readClientPut()))
+		replyWithPutSuccessful(extractIdentifier(readClientPut()))
+		Thread.sleep(250)
+		assertThat(takenItems.get(), equalTo(2))
+		assertThat(results.next().uri, equalTo("KSK@1"))
+		assertThat(extractUri(readClientPut()), equalTo("KSK@3"))
+		assertThat(takenItems.get(), equalTo(3))
+	}
+
+	@Test
+	fun failedInsertsAreReturnedWithoutKey() {
+		val results = client().bulkInsert()
+				.items(Stream.of(createItem("KSK@1")))
+				.execute().get().iterator()
+		connectNode()
+		val insert = readClientPut()
+		answer("PutFailed", "Identifier=" + extractIdentifier(insert), "Code=9", "EndMessage")
+		val result = results.next()
+		assertThat(result.key, nullValue())
+		assertThat(result.throughput.inserted, equalTo(0L))
+		assertThat(result.throughput.failed, equalTo(1L))
+		assertThat(results.hasNext(), equalTo(false))
+	}
+
+	@Test
+	fun emptyStreamReturnsNoResults() {
+		val results = client().bulkInsert().items(Stream.empty()).execute().get()
+		assertThat(results.count(), equalTo(0L))
+	}
+
+	private fun createItem(uri: String) =
+			Item.data(ByteBuffer.wrap("Hello\n".toByteArray()), uri)
+
+	private fun readClientPut() =
+			collectUntil(equalTo("Hello")).also { assertThat(it, hasHead("ClientPut")) }
+
+	private fun extractUri(lines: List<String>) =
+			lines.first { it.startsWith("URI=") }.substring(4)
+
+}
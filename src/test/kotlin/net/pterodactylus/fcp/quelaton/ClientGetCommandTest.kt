@@ -6,6 +6,9 @@ import net.pterodactylus.fcp.test.*
 import org.hamcrest.MatcherAssert.*
 import org.hamcrest.Matchers.*
 import org.junit.*
+import org.junit.rules.*
+import java.io.*
+import java.nio.channels.*
 import java.nio.charset.StandardCharsets.*
 import java.util.*
 import java.util.concurrent.*
@@ -15,6 +18,10 @@ import java.util.concurrent.*
  */
 class ClientGetCommandTest : AbstractClientCommandTest() {
 
+	@Rule
+	@JvmField
+	val temporaryFolder = TemporaryFolder()
+
 	@Test
 	fun works() {
 		val dataFuture = client().clientGet().uri("KSK@foo.txt").execute()
@@ -113,6 +120,177 @@ class ClientGetCommandTest : AbstractClientCommandTest() {
 		assertThat<List<String>>(redirects, contains("USK@foo/baz", "USK@foo/quux"))
 	}
 
+	@Test
+	fun progressIsReportedAtMostOncePerInterval() {
+		val progress = LinkedBlockingQueue<Int>()
+		val dataFuture = client().clientGet().onProgress { progress.add(it.succeeded) }.progressInterval(1, TimeUnit.MINUTES).uri("KSK@foo.txt").execute()
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@foo.txt", "Verbosity=1") }
+		replyWithSimpleProgress(1)
+		assertThat(progress.poll(1, TimeUnit.SECONDS), equalTo(1))
+		replyWithSimpleProgress(2)
+		replyWithSimpleProgress(3)
+		replyWithAllData(identifier(), "Hello", "text/plain;charset=utf-8")
+		verifyData(dataFuture.get())
+		assertThat(progress.poll(1, TimeUnit.SECONDS), equalTo(3))
+		assertThat(progress.poll(100, TimeUnit.MILLISECONDS), nullValue())
+	}
+
+	@Test
+	fun scheduledRequestIsSentWhenTheRunningRequestHasFinished() {
+		val client = client() as DefaultFcpClient
+		client.scheduleRequests(1, 1, TimeUnit.HOURS)
+		val firstData = client.forTenant("first").clientGet().uri("KSK@foo.txt").execute()
+		val secondData = client.forTenant("second").clientGet().uri("KSK@bar.txt").execute()
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@foo.txt") }
+		replyWithAllData(identifier(), "Hello", "text/plain;charset=utf-8")
+		verifyData(firstData.get())
+		readMessage { matchesFcpMessage("ClientGet", "URI=KSK@bar.txt") }
+		replyWithAllData(identifier(), "Hello", "text/plain;charset=utf-8")
+		verifyData(secondData.get())
+	}
+
+	@Test
+	fun cancellingTheRequestRemovesItFromTheNode() {
+		val dataFuture = client().clientGet().uri("KSK@foo.txt").execute()
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@foo.txt") }
+		dataFuture.cancel(false)
+		readMessage { matchesFcpMessage("RemovePersistentRequest", "Identifier=" + identifier()) }
+	}
+
+	@Test
+	fun streamedDataIsReadFromTheConnection() {
+		val dataFuture = client().clientGet().streaming().uri("KSK@foo.txt").execute()
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@foo.txt", "ReturnType=direct") }
+		replyWithAllData(identifier(), "Hello", "text/plain;charset=utf-8")
+		verifyData(dataFuture.get())
+		verifyConnectionIsUsable()
+	}
+
+	@Test
+	fun closingTheStreamReleasesTheConnection() {
+		val dataFuture = client().clientGet().streaming().uri("KSK@foo.txt").execute()
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@foo.txt") }
+		replyWithAllData(identifier(), "Hello", "text/plain;charset=utf-8")
+		dataFuture.get()!!.inputStream.close()
+		verifyConnectionIsUsable()
+	}
+
+	@Test
+	fun readingTheLastByteOfTheStreamReleasesTheConnection() {
+		val dataFuture = client().clientGet().streaming().uri("KSK@foo.txt").execute()
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@foo.txt") }
+		replyWithAllData(identifier(), "Hello", "text/plain;charset=utf-8")
+		val buffer = ByteArray(6)
+		DataInputStream(dataFuture.get()!!.inputStream).readFully(buffer)
+		assertThat(buffer, equalTo("Hello\n".toByteArray(UTF_8)))
+		verifyConnectionIsUsable()
+	}
+
+	@Test
+	fun streamThatIsNotReadIsDiscardedAfterTheCommandTimeout() {
+		val dataFuture = client().clientGet().streaming().uri("KSK@foo.txt").execute()
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@foo.txt") }
+		(client() as DefaultFcpClient).setCommandTimeout(200, TimeUnit.MILLISECONDS)
+		replyWithAllData(identifier(), "Hello", "text/plain;charset=utf-8")
+		val data = dataFuture.get()!!
+		(client() as DefaultFcpClient).setCommandTimeout(0, TimeUnit.MILLISECONDS)
+		verifyConnectionIsUsable()
+		try {
+			data.inputStream.read()
+			Assert.fail()
+		} catch (e: IOException) {
+			/* the payload has been discarded. */
+		}
+	}
+
+	@Test
+	fun dataCanBeWrittenToAChannel() {
+		val output = ByteArrayOutputStream()
+		val fetched = client().clientGet().uri("KSK@foo.txt", Channels.newChannel(output)).execute()
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@foo.txt", "ReturnType=direct") }
+		replyWithAllData(identifier(), "Hello", "text/plain;charset=utf-8")
+		assertThat(fetched.get(), equalTo(Fetched("text/plain;charset=utf-8", 6)))
+		assertThat(output.toByteArray(), equalTo("Hello\n".toByteArray(UTF_8)))
+	}
+
+	@Test
+	fun dataCanBeWrittenToAFile() {
+		val file = temporaryFolder.newFile().toPath()
+		val fetched = client().clientGet().uri("KSK@foo.txt", file).execute()
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@foo.txt", "ReturnType=direct") }
+		replyWithAllData(identifier(), "Hello", "text/plain;charset=utf-8")
+		assertThat(fetched.get(), equalTo(Fetched("text/plain;charset=utf-8", 6)))
+		assertThat(file.toFile().readBytes(), equalTo("Hello\n".toByteArray(UTF_8)))
+	}
+
+	@Test
+	fun nodeCanWriteDataToAFile() {
+		val file = File(temporaryFolder.root, "foo.txt")
+		val fetched = client().clientGet().toFile(file).uri("KSK@foo.txt").execute()
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@foo.txt", "ReturnType=disk", "Filename=$file") }
+		replyWithDataFound()
+		assertThat(fetched.get(), equalTo(Fetched("text/plain;charset=utf-8", 6)))
+	}
+
+	@Test
+	fun directDiskAccessIsNegotiatedForWritingToAFile() {
+		val file = File(temporaryFolder.root, "foo.txt")
+		val ddaFile = File(temporaryFolder.root, "dda.txt")
+		val fetched = client().clientGet().toFile(file).uri("KSK@foo.txt").execute()
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@foo.txt", "ReturnType=disk") }
+		val clientGetIdentifier = identifier()
+		replyWithProtocolError(25)
+		readMessage { matchesFcpMessage("TestDDARequest", "Directory=${temporaryFolder.root}", "WantReadDirectory=false", "WantWriteDirectory=true") }
+		answer("TestDDAReply", "Directory=${temporaryFolder.root}", "WriteFilename=$ddaFile", "ContentToWrite=test-content", "EndMessage")
+		readMessage { matchesFcpMessage("TestDDAResponse", "Directory=${temporaryFolder.root}") }
+		assertThat(ddaFile.readText(), equalTo("test-content"))
+		answer("TestDDAComplete", "Directory=${temporaryFolder.root}", "WriteDirectoryAllowed=true", "EndMessage")
+		readMessage { matchesFcpMessage("ClientGet", "Identifier=$clientGetIdentifier", "URI=KSK@foo.txt", "ReturnType=disk") }
+		replyWithDataFound()
+		assertThat(fetched.get(), equalTo(Fetched("text/plain;charset=utf-8", 6)))
+	}
+
+	@Test
+	fun deniedDirectDiskAccessFailsTheRequest() {
+		val fetched = client().clientGet().toFile(File(temporaryFolder.root, "foo.txt")).uri("KSK@foo.txt").execute()
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@foo.txt", "ReturnType=disk") }
+		replyWithProtocolError(25)
+		readMessage { matchesFcpMessage("TestDDARequest", "Directory=${temporaryFolder.root}") }
+		answer("TestDDAComplete", "Directory=${temporaryFolder.root}", "WriteDirectoryAllowed=false", "EndMessage")
+		try {
+			fetched.get()
+			Assert.fail()
+		} catch (e: ExecutionException) {
+			assertThat(e.cause, instanceOf(IOException::class.java))
+		}
+	}
+
+	private fun replyWithProtocolError(code: Int) {
+		answer(
+				"ProtocolError",
+				"Identifier=" + identifier(),
+				"Code=$code",
+				"EndMessage"
+		)
+	}
+
+	private fun replyWithDataFound() {
+		answer(
+				"DataFound",
+				"Identifier=" + identifier(),
+				"DataLength=6",
+				"Metadata.ContentType=text/plain;charset=utf-8",
+				"EndMessage"
+		)
+	}
+
+	private fun verifyConnectionIsUsable() {
+		val dataFuture = client().clientGet().uri("KSK@bar.txt").execute()
+		readMessage { matchesFcpMessage("ClientGet", "URI=KSK@bar.txt") }
+		replyWithAllData(identifier(), "Hello", "text/plain;charset=utf-8")
+		verifyData(dataFuture.get())
+	}
+
 	private fun replyWithGetFailed(identifier: String) {
 		answer(
 				"GetFailed",
@@ -132,6 +310,22 @@ class ClientGetCommandTest : AbstractClientCommandTest() {
 		)
 	}
 
+	private fun replyWithSimpleProgress(succeeded: Int) {
+		answer(
+				"SimpleProgress",
+				"Identifier=" + identifier(),
+				"Total=10",
+				"Required=10",
+				"Failed=0",
+				"FatallyFailed=0",
+				"Succeeded=$succeeded",
+				"LastProgress=1435610540000",
+				"FinalizedTotal=true",
+				"MinSuccessFetchBlocks=10",
+				"EndMessage"
+		)
+	}
+
 	private fun replyWithAllData(identifier: String, text: String, contentType: String) {
 		answer(
 				"AllData",
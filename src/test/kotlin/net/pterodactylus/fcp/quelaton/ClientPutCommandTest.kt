@@ -7,7 +7,11 @@ import org.hamcrest.*
 import org.hamcrest.MatcherAssert.*
 import org.hamcrest.Matchers.*
 import org.junit.*
+import org.junit.rules.*
 import java.io.*
+import java.nio.*
+import java.nio.channels.*
+import java.nio.file.*
 import java.util.*
 import java.util.concurrent.*
 import java.util.function.*
@@ -17,6 +21,10 @@ import java.util.function.*
  */
 class ClientPutCommandTest : AbstractClientPutCommandTest() {
 
+	@Rule
+	@JvmField
+	val temporaryFolder = TemporaryFolder()
+
 	@Test
 	fun sendsCorrectCommand() {
 		client().clientPut()
@@ -90,6 +98,47 @@ class ClientPutCommandTest : AbstractClientPutCommandTest() {
 		connectAndAssert { matchesFcpMessage("ClientPut", "UploadFrom=disk", "URI=KSK@foo.txt", "Filename=/tmp/data.txt") }
 	}
 
+	@Test
+	fun contentOfPathIsSentDirectly() {
+		val path = temporaryFolder.newFile().toPath().also { Files.write(it, "Hello\n".toByteArray()) }
+		client().clientPut().from(path).uri("KSK@foo.txt").execute()
+		connectNode()
+		readMessage("Hello") { matchesDirectClientPut() }
+	}
+
+	@Test
+	fun remainingContentOfBufferIsSentWithoutModifyingTheBuffer() {
+		val buffer = ByteBuffer.allocateDirect(10).apply { put("--Hello\n".toByteArray()); flip(); position(2) }
+		client().clientPut().from(buffer).uri("KSK@foo.txt").execute()
+		connectNode()
+		readMessage("Hello") { matchesDirectClientPut() }
+		assertThat(buffer.position(), equalTo(2))
+	}
+
+	@Test
+	fun contentOfChannelIsSentFromItsCurrentPosition() {
+		val path = temporaryFolder.newFile().toPath().also { Files.write(it, "--Hello\n".toByteArray()) }
+		FileChannel.open(path).use { channel ->
+			channel.position(2)
+			client().clientPut().from(channel).uri("KSK@foo.txt").execute()
+			connectNode()
+			readMessage("Hello") { matchesDirectClientPut() }
+		}
+	}
+
+	@Test
+	fun channelIsNotClosedByTheInsert() {
+		val path = temporaryFolder.newFile().toPath().also { Files.write(it, "Hello\n".toByteArray()) }
+		FileChannel.open(path).use { channel ->
+			val key = client().clientPut().from(channel).uri("KSK@foo.txt").execute()
+			connectNode()
+			readMessage("Hello") { matchesDirectClientPut() }
+			replyWithPutSuccessful(identifier())
+			assertThat(key.get().get().key, equalTo("KSK@foo.txt"))
+			assertThat(channel.isOpen, equalTo(true))
+		}
+	}
+
 	private fun replyWithPutFailed(identifier: String) {
 		answer(
 				"PutFailed",
@@ -163,9 +212,30 @@ class ClientPutCommandTest : AbstractClientPutCommandTest() {
 
 	@Test
 	fun clientPutSendsNotificationOnProgress() {
-		val requestProgress = ArrayList<RequestProgress>()
+		val requestProgress = LinkedBlockingQueue<RequestProgress>()
+		val key = client().clientPut()
+				.onProgress(Consumer<RequestProgress> { requestProgress.add(it) })
+				.progressInterval(0, TimeUnit.SECONDS)
+				.from(ByteArrayInputStream("Hello\n".toByteArray()))
+				.length(6)
+				.uri("KSK@foo.txt")
+				.execute()
+		connectNode()
+		readMessage("Hello") { matchesDirectClientPut("Verbosity=1") }
+		replyWithSimpleProgress(1, 2, 3, 4, 5, 6, true, 8)
+		assertThat(requestProgress.poll(1, TimeUnit.SECONDS), isRequestProgress(1, 2, 3, 4, 5, 6, true, 8))
+		replyWithSimpleProgress(11, 12, 13, 14, 15, 16, false, 18)
+		assertThat(requestProgress.poll(1, TimeUnit.SECONDS), isRequestProgress(11, 12, 13, 14, 15, 16, false, 18))
+		replyWithPutSuccessful(identifier())
+		assertThat(key.get().get().key, `is`("KSK@foo.txt"))
+	}
+
+	@Test
+	fun clientPutCoalescesProgressWithinTheProgressInterval() {
+		val requestProgress = LinkedBlockingQueue<RequestProgress>()
 		val key = client().clientPut()
 				.onProgress(Consumer<RequestProgress> { requestProgress.add(it) })
+				.progressInterval(1, TimeUnit.MINUTES)
 				.from(ByteArrayInputStream("Hello\n".toByteArray()))
 				.length(6)
 				.uri("KSK@foo.txt")
@@ -173,13 +243,13 @@ class ClientPutCommandTest : AbstractClientPutCommandTest() {
 		connectNode()
 		readMessage("Hello") { matchesDirectClientPut("Verbosity=1") }
 		replyWithSimpleProgress(1, 2, 3, 4, 5, 6, true, 8)
+		assertThat(requestProgress.poll(1, TimeUnit.SECONDS), isRequestProgress(1, 2, 3, 4, 5, 6, true, 8))
 		replyWithSimpleProgress(11, 12, 13, 14, 15, 16, false, 18)
+		replyWithSimpleProgress(21, 22, 23, 24, 25, 26, true, 28)
 		replyWithPutSuccessful(identifier())
 		assertThat(key.get().get().key, `is`("KSK@foo.txt"))
-		assertThat<List<RequestProgress>>(requestProgress, contains(
-				isRequestProgress(1, 2, 3, 4, 5, 6, true, 8),
-				isRequestProgress(11, 12, 13, 14, 15, 16, false, 18)
-		))
+		assertThat(requestProgress.poll(1, TimeUnit.SECONDS), isRequestProgress(21, 22, 23, 24, 25, 26, true, 28))
+		assertThat(requestProgress.poll(100, TimeUnit.MILLISECONDS), nullValue())
 	}
 
 }
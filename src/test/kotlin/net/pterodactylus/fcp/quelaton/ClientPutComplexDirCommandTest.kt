@@ -0,0 +1,149 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.*
+import net.pterodactylus.fcp.quelaton.RequestProgressMatcher.*
+import net.pterodactylus.fcp.test.*
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import org.junit.rules.*
+import java.io.*
+import java.nio.*
+import java.nio.file.*
+import java.util.concurrent.*
+import java.util.concurrent.TimeUnit.*
+import java.util.function.*
+
+/**
+ * Unit test for [ClientPutComplexDirCommand].
+ */
+class ClientPutComplexDirCommandTest : AbstractClientPutCommandTest() {
+
+	@Rule
+	@JvmField
+	val temporaryFolder = TemporaryFolder()
+
+	@Test
+	fun allFilesAreSentInOneMessageFollowedByTheirData() {
+		val path = temporaryFolder.newFile().toPath().also { Files.write(it, "World\n".toByteArray()) }
+		val file = temporaryFolder.newFile("disk.txt").also { it.writeText("Disk\n") }
+		val key = client().clientPutComplexDir()
+				.defaultName("index.html")
+				.file("index.html").contentType("text/html").from(ByteArrayInputStream("Hello\n".toByteArray())).length(6)
+				.file("images/world.txt").from(path)
+				.file("redirect.txt").redirectTo("KSK@bar.txt")
+				.file("disk.txt").from(file)
+				.file("buffer.txt").from(ByteBuffer.wrap("Buffer\n".toByteArray()))
+				.uri("CHK@")
+				.execute()
+		connectNode()
+		readMessage("Buffer") {
+			allOf(
+					hasHead("ClientPutComplexDir"),
+					hasParameters(1, 4,
+							"URI=CHK@",
+							"DefaultName=index.html",
+							"Files.0.Name=index.html",
+							"Files.0.UploadFrom=direct",
+							"Files.0.Metadata.ContentType=text/html",
+							"Files.0.DataLength=6",
+							"Files.1.Name=images/world.txt",
+							"Files.1.UploadFrom=direct",
+							"Files.1.DataLength=6",
+							"Files.2.Name=redirect.txt",
+							"Files.2.UploadFrom=redirect",
+							"Files.2.TargetURI=KSK@bar.txt",
+							"Files.3.Name=disk.txt",
+							"Files.3.UploadFrom=disk",
+							"Files.3.Filename=$file",
+							"Files.4.Name=buffer.txt",
+							"Files.4.UploadFrom=direct",
+							"Files.4.DataLength=7"),
+					hasTail("EndMessage", "Hello", "World", "Buffer")
+			)
+		}
+		answer("PutSuccessful", "Identifier=${identifier()}", "URI=CHK@abc", "EndMessage")
+		assertThat(key.get().get().key, equalTo("CHK@abc"))
+	}
+
+	@Test
+	fun failedInsertReturnsNoKey() {
+		val key = client().clientPutComplexDir().file("foo.txt").redirectTo("KSK@bar.txt").uri("CHK@").execute()
+		connectAndAssert { matchesFcpMessage("ClientPutComplexDir", "URI=CHK@", "Files.0.Name=foo.txt") }
+		answer("PutFailed", "Identifier=${identifier()}", "EndMessage")
+		assertThat(key.get().isPresent, equalTo(false))
+	}
+
+	@Test
+	fun progressAndGeneratedUriAreSentToConsumers() {
+		val requestProgress = LinkedBlockingQueue<RequestProgress>()
+		val generatedKeys = LinkedBlockingQueue<String>()
+		val key = client().clientPutComplexDir()
+				.onProgress(Consumer { requestProgress.add(it) }).progressInterval(0, SECONDS)
+				.onKeyGenerated(Consumer { generatedKeys.add(it) })
+				.file("foo.txt").redirectTo("KSK@bar.txt")
+				.uri("CHK@")
+				.execute()
+		connectAndAssert { matchesFcpMessage("ClientPutComplexDir", "URI=CHK@", "Verbosity=1") }
+		replyWithGeneratedUri()
+		replyWithSimpleProgress(1, 2, 3, 4, 5, 6, true, 8)
+		assertThat(requestProgress.poll(1, SECONDS), isRequestProgress(1, 2, 3, 4, 5, 6, true, 8))
+		replyWithPutSuccessful(identifier())
+		assertThat(key.get().get().key, equalTo("KSK@foo.txt"))
+		assertThat(generatedKeys.poll(1, SECONDS), equalTo("KSK@foo.txt"))
+	}
+
+	@Test
+	fun directDiskAccessIsNegotiatedForEveryDirectoryAndTheDataIsSentAgain() {
+		val firstDirectory = temporaryFolder.newFolder("a")
+		val secondDirectory = temporaryFolder.newFolder("b")
+		val firstFile = File(firstDirectory, "first.txt").also { it.writeText("First\n") }
+		val secondFile = File(secondDirectory, "second.txt").also { it.writeText("Second\n") }
+		val otherFile = File(secondDirectory, "other.txt").also { it.writeText("Other\n") }
+		val key = client().clientPutComplexDir()
+				.file("first.txt").from(firstFile)
+				.file("second.txt").from(secondFile)
+				.file("other.txt").from(otherFile)
+				.file("hello.txt").from(ByteBuffer.wrap("Hello\n".toByteArray()))
+				.uri("CHK@")
+				.execute()
+		connectNode()
+		readMessage("Hello") { allOf(hasHead("ClientPutComplexDir"), hasTail("EndMessage", "Hello")) }
+		val clientPutComplexDirIdentifier = identifier()
+		answer("ProtocolError", "Identifier=$clientPutComplexDirIdentifier", "Code=25", "EndMessage")
+		val testDdaRequests = listOf(collectUntil(equalTo("EndMessage")), collectUntil(equalTo("EndMessage")))
+		assertThat(testDdaRequests.map { it.first() }, contains("TestDDARequest", "TestDDARequest"))
+		assertThat(testDdaRequests.map { it.first { line -> line.startsWith("Directory=") } }, containsInAnyOrder("Directory=$firstDirectory", "Directory=$secondDirectory"))
+		testDdaRequests.forEach { assertThat(it, hasItem("WantReadDirectory=true")) }
+		for (directory in listOf(firstDirectory, secondDirectory)) {
+			val ddaFile = File(directory, "dda.txt").also { it.writeText("content-of-${directory.name}\n") }
+			answer("TestDDAReply", "Directory=$directory", "ReadFilename=$ddaFile", "EndMessage")
+			readMessage { matchesFcpMessage("TestDDAResponse", "Directory=$directory", "ReadContent=content-of-${directory.name}") }
+			answer("TestDDAComplete", "Directory=$directory", "ReadDirectoryAllowed=true", "EndMessage")
+		}
+		readMessage("Hello") {
+			allOf(
+					hasHead("ClientPutComplexDir"),
+					hasParameters(1, 2, "Identifier=$clientPutComplexDirIdentifier", "Files.0.Filename=$firstFile", "Files.1.Filename=$secondFile"),
+					hasTail("EndMessage", "Hello")
+			)
+		}
+		replyWithPutSuccessful(clientPutComplexDirIdentifier)
+		assertThat(key.get().get().key, equalTo("KSK@foo.txt"))
+	}
+
+	@Test
+	fun insertWithStreamIsNotSentAgainWhenDirectDiskAccessIsRequired() {
+		val file = temporaryFolder.newFile("disk.txt").also { it.writeText("Disk\n") }
+		val key = client().clientPutComplexDir()
+				.file("disk.txt").from(file)
+				.file("hello.txt").from(ByteArrayInputStream("Hello\n".toByteArray())).length(6)
+				.uri("CHK@")
+				.execute()
+		connectNode()
+		readMessage("Hello") { allOf(hasHead("ClientPutComplexDir"), hasTail("EndMessage", "Hello")) }
+		answer("ProtocolError", "Identifier=${identifier()}", "Code=25", "EndMessage")
+		assertThat(key.get().isPresent, equalTo(false))
+	}
+
+}
@@ -0,0 +1,65 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.sun.management.ThreadMXBean
+import net.pterodactylus.fcp.fake.*
+import org.hamcrest.Matchers.*
+import java.io.*
+import java.lang.management.*
+import java.util.concurrent.*
+import kotlin.concurrent.*
+
+/**
+ * Benchmark that measures the number of bytes allocated per
+ * `DefaultFcpClient.getNode()` command, executed through [Executable.execute]
+ * and through [Executable.executeAsync], against a fake node that answers every
+ * `GetNode` with a minimal `NodeData`.
+ *
+ * The allocations of all live threads are counted, including the fake node, so
+ * the numbers are only meaningful relative to each other.
+ *
+ * Run with `java -cp … net.pterodactylus.fcp.quelaton.CommandAllocationBenchmarkKt`.
+ */
+fun main(args: Array<String>) {
+	val threadPool = Executors.newCachedThreadPool()
+	val fakeNode = FakeTcpServer(threadPool)
+	val connected = fakeNode.connect()
+	val fcpClient = DefaultFcpClient(threadPool, "localhost", fakeNode.port) { "benchmark" }
+	thread(isDaemon = true) { runFakeNode(fakeNode, connected) }
+
+	println(String.format("%15s %15s", "method", "bytes/command"))
+	repeat(3) {
+		println(String.format("%15s %15.1f", "execute", measure { fcpClient.getNode().execute().get() }))
+		println(String.format("%15s %15.1f", "executeAsync", measure { fcpClient.getNode().executeAsync().toCompletableFuture().get() }))
+	}
+	fakeNode.close()
+	threadPool.shutdown()
+}
+
+private const val iterations = 20_000
+
+private fun measure(command: () -> Unit): Double {
+	repeat(iterations) { command() }
+	val start = allocatedBytes()
+	repeat(iterations) { command() }
+	return (allocatedBytes() - start).toDouble() / iterations
+}
+
+private fun allocatedBytes(): Long =
+		(ManagementFactory.getThreadMXBean() as ThreadMXBean).let { threadMXBean ->
+			threadMXBean.getThreadAllocatedBytes(threadMXBean.allThreadIds).filter { it > 0 }.sum()
+		}
+
+private fun runFakeNode(fakeNode: FakeTcpServer, connected: Future<*>) {
+	connected.get()
+	fakeNode.collectUntil(equalTo("EndMessage"))
+	fakeNode.writeLine("NodeHello", "FCPVersion=2.0", "Node=Fred", "ConnectionIdentifier=benchmark", "EndMessage")
+	while (true) {
+		val request = try {
+			fakeNode.collectUntil(equalTo("EndMessage"))
+		} catch (e: IOException) {
+			null
+		} ?: return
+		val identifier = request.first { it.startsWith("Identifier=") }
+		fakeNode.writeLine(listOf("NodeData", identifier, "ark.pubURI=SSK@ark", "ark.number=1", "auth.negTypes=2", "version=Fred,0.7,1.0,1466", "lastGoodVersion=Fred,0.7,1.0,1466", "EndMessage").joinToString("\n"))
+	}
+}
@@ -0,0 +1,60 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import kotlinx.coroutines.experimental.*
+import net.pterodactylus.fcp.test.*
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import java.io.*
+import java.nio.charset.StandardCharsets.*
+
+/**
+ * Unit test for the suspending command API in `Coroutines.kt`.
+ */
+class CoroutinesTest : AbstractClientCommandTest() {
+
+	@Test
+	fun `data can be fetched from a coroutine`() {
+		val data = async { client().clientGet().uri("KSK@foo.txt").fetch() }
+		connectAndAssert { matchesFcpMessage("ClientGet", "URI=KSK@foo.txt", "ReturnType=direct") }
+		answer(
+				"AllData",
+				"Identifier=" + identifier(),
+				"DataLength=6",
+				"Metadata.ContentType=text/plain;charset=utf-8",
+				"Data",
+				"Hello"
+		)
+		runBlocking {
+			assertThat(data.await()?.inputStream?.readBytes(), equalTo("Hello\n".toByteArray(UTF_8)))
+		}
+	}
+
+	@Test(expected = IOException::class)
+	fun `failure of a command is thrown from await`() {
+		val keyPair = async { client().generateKeypair().await() }
+		connectAndAssert { matchesFcpMessage("GenerateSSK") }
+		closeFcpServer()
+		runBlocking { keyPair.await() }
+	}
+
+	@Test
+	fun `cancelling the coroutine cancels the future`() {
+		val future = SettableFuture.create<String>()
+		val result = async(start = CoroutineStart.UNDISPATCHED) { future.await() }
+		runBlocking {
+			result.cancel()
+			result.join()
+		}
+		assertThat(future.isCancelled, equalTo(true))
+	}
+
+	@Test
+	fun `result of a completed future is returned without suspending`() {
+		runBlocking {
+			assertThat(Futures.immediateFuture("done").await(), equalTo("done"))
+		}
+	}
+
+}
@@ -0,0 +1,200 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.*
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import org.mockito.Mockito.*
+import java.io.*
+import java.util.concurrent.*
+import java.util.function.*
+
+/**
+ * Unit test for [FcpConnectionPool].
+ */
+class FcpConnectionPoolTest {
+
+	private val fcpConnections = CopyOnWriteArrayList<FcpConnection>()
+	private val clientNames = CopyOnWriteArrayList<String>()
+	private val connectedIndices = CopyOnWriteArrayList<Int>()
+	private var connectionFailure: Exception? = null
+	private var listenerFailure: IOException? = null
+	private var connectionStarted = CountDownLatch(0)
+	private var connectionReleased = CountDownLatch(0)
+	private var now = 0L
+	private val connectionFactory = object : FcpConnectionPool.ConnectionFactory {
+		override fun createConnection(clientName: String): FcpMessageRouter {
+			clientNames += clientName
+			connectionStarted.countDown()
+			connectionReleased.await()
+			connectionFailure?.let { throw it }
+			return FcpMessageRouter(mock(FcpConnection::class.java).also { fcpConnections += it })
+		}
+	}
+	private val connectionListener = object : FcpConnectionPool.ConnectionListener {
+		override fun connected(index: Int, connection: FcpMessageRouter) {
+			connectedIndices += index
+			listenerFailure?.let { throw it }
+		}
+	}
+
+	private fun createPool(size: Int) = FcpConnectionPool(size, Supplier { "client" }, connectionFactory, connectionListener, Backoff(random = { 0.0 })) { now }
+
+	@Test
+	fun `single connection uses the client name as it is`() {
+		createPool(1).primary()
+		assertThat(clientNames, equalTo(listOf("client")))
+	}
+
+	@Test
+	fun `connections are opened lazily`() {
+		val pool = createPool(3)
+		assertThat<List<String>>(clientNames, empty())
+		pool.leastLoaded()
+		assertThat(clientNames, equalTo(listOf("client-0")))
+	}
+
+	@Test
+	fun `idle connection is reused instead of opening a new one`() {
+		val pool = createPool(3)
+		val connection = pool.leastLoaded()
+		assertThat(pool.leastLoaded(), sameInstance(connection))
+		assertThat(clientNames, equalTo(listOf("client-0")))
+	}
+
+	@Test
+	fun `busy connection causes a new connection to be opened`() {
+		val pool = createPool(3)
+		val firstConnection = pool.leastLoaded()
+		firstConnection.register("id1", FcpAdapter())
+		val secondConnection = pool.leastLoaded()
+		assertThat(secondConnection, not(sameInstance(firstConnection)))
+		assertThat<List<String>>(clientNames, contains("client-0", "client-1"))
+		assertThat<List<Int>>(connectedIndices, contains(0, 1))
+	}
+
+	@Test
+	fun `connection with the fewest in-flight requests is used when all connections are open`() {
+		val pool = createPool(2)
+		val firstConnection = pool.leastLoaded().apply { register("id1", FcpAdapter()) }
+		val secondConnection = pool.leastLoaded().apply { register("id2", FcpAdapter()); register("id3", FcpAdapter()) }
+		assertThat(pool.leastLoaded(), sameInstance(firstConnection))
+		firstConnection.register("id4", FcpAdapter())
+		firstConnection.register("id5", FcpAdapter())
+		assertThat(pool.leastLoaded(), sameInstance(secondConnection))
+	}
+
+	@Test
+	fun `busy connection is used if a new connection can not be opened`() {
+		val pool = createPool(2)
+		val firstConnection = pool.leastLoaded().apply { register("id1", FcpAdapter()) }
+		connectionFailure = IOException()
+		assertThat(pool.leastLoaded(), sameInstance(firstConnection))
+		assertThat(pool.leastLoaded(), sameInstance(firstConnection))
+		assertThat<List<String>>(clientNames, contains("client-0", "client-1"))
+	}
+
+	@Test
+	fun `closed connection is replaced`() {
+		val pool = createPool(1)
+		val connection = pool.primary()
+		`when`(fcpConnections[0].isClosed).thenReturn(true)
+		assertThat(pool.primary(), not(sameInstance(connection)))
+		assertThat<List<Int>>(connectedIndices, contains(0, 0))
+	}
+
+	@Test
+	fun `status reports load of all connections`() {
+		val pool = createPool(2)
+		pool.primary().register("id1", FcpAdapter())
+		assertThat<List<ConnectionStatus>>(pool.status, contains(
+				ConnectionStatus("client-0", true, 1, 0),
+				ConnectionStatus(null, false, 0, 0)
+		))
+	}
+
+	@Test
+	fun `concurrent callers share a single connection attempt`() {
+		val pool = createPool(1)
+		connectionStarted = CountDownLatch(1)
+		connectionReleased = CountDownLatch(1)
+		val threadPool = Executors.newFixedThreadPool(4)
+		try {
+			val connections = (1..4).map { threadPool.submit(Callable { pool.primary() }) }
+			connectionStarted.await()
+			Thread.sleep(100)
+			connectionReleased.countDown()
+			assertThat(connections.map { it.get() }.toSet().size, equalTo(1))
+			assertThat(clientNames.size, equalTo(1))
+		} finally {
+			threadPool.shutdown()
+		}
+	}
+
+	@Test
+	fun `failed connection attempt is not repeated before the backoff delay has passed`() {
+		val pool = createPool(1)
+		connectionFailure = IOException()
+		expectIOException { pool.primary() }
+		expectIOException { pool.primary() }
+		assertThat(clientNames.size, equalTo(1))
+		now += TimeUnit.MILLISECONDS.toNanos(50)
+		connectionFailure = null
+		pool.primary()
+		assertThat(clientNames.size, equalTo(2))
+	}
+
+	@Test
+	fun `backoff delay grows with every failed attempt`() {
+		val pool = createPool(1)
+		connectionFailure = IOException()
+		expectIOException { pool.primary() }
+		now += TimeUnit.MILLISECONDS.toNanos(50)
+		expectIOException { pool.primary() }
+		now += TimeUnit.MILLISECONDS.toNanos(50)
+		expectIOException { pool.primary() }
+		assertThat(clientNames.size, equalTo(2))
+		now += TimeUnit.MILLISECONDS.toNanos(50)
+		expectIOException { pool.primary() }
+		assertThat(clientNames.size, equalTo(3))
+	}
+
+	@Test
+	fun `connection attempt failing with a runtime exception is not repeated before the backoff delay has passed`() {
+		val pool = createPool(1)
+		connectionFailure = IllegalStateException()
+		expectIOException { pool.primary() }
+		expectIOException { pool.primary() }
+		assertThat(clientNames.size, equalTo(1))
+		now += TimeUnit.MILLISECONDS.toNanos(50)
+		connectionFailure = null
+		pool.primary()
+		assertThat(clientNames.size, equalTo(2))
+	}
+
+	@Test
+	fun `connection is closed and not used if the listener fails`() {
+		val pool = createPool(1)
+		listenerFailure = IOException()
+		expectIOException { pool.primary() }
+		verify(fcpConnections[0]).close()
+		assertThat(pool.status[0].connected, equalTo(false))
+		expectIOException { pool.primary() }
+		assertThat(clientNames.size, equalTo(1))
+		now += TimeUnit.MILLISECONDS.toNanos(50)
+		listenerFailure = null
+		pool.primary()
+		assertThat(fcpConnections.size, equalTo(2))
+		assertThat(pool.status[0].connected, equalTo(true))
+	}
+
+	private fun expectIOException(action: () -> Unit) {
+		try {
+			action()
+			Assert.fail()
+		} catch (e: IOException) {
+			/* expected. */
+		}
+	}
+
+}
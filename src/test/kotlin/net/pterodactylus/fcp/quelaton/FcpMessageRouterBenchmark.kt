@@ -0,0 +1,55 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.*
+
+/**
+ * Micro-benchmark that compares the cost of dispatching a single message with
+ * the [FcpMessageRouter] against the previous fan-out to every open dialog,
+ * for a growing number of open dialogs.
+ *
+ * Run with `java -cp … net.pterodactylus.fcp.quelaton.FcpMessageRouterBenchmarkKt`.
+ */
+fun main(args: Array<String>) {
+	println(String.format("%10s %15s %15s", "dialogs", "router ns/msg", "fan-out ns/msg"))
+	listOf(10, 100, 1_000, 10_000).forEach { dialogCount ->
+		val (routed, fannedOut) = measure(dialogCount)
+		println(String.format("%10d %15.1f %15.1f", dialogCount, routed, fannedOut))
+	}
+}
+
+private const val iterations = 200_000
+
+private fun measure(dialogCount: Int): Pair<Double, Double> {
+	val fcpConnection = FcpConnection("localhost", 9481)
+	val messageRouter = FcpMessageRouter(fcpConnection)
+	val dialogs = (0 until dialogCount).map { "dialog-$it" to CountingListener() }
+	dialogs.forEach { (identifier, listener) -> messageRouter.register(identifier, listener) }
+	val peer = Peer(FcpMessage("Peer").put("Identifier", "dialog-${dialogCount / 2}"))
+
+	val routed = time { messageRouter.receivedPeer(fcpConnection, peer) }
+	val fannedOut = time {
+		dialogs.forEach { (identifier, listener) ->
+			if (peer.getField("Identifier") == identifier) {
+				listener.receivedPeer(fcpConnection, peer)
+			}
+		}
+	}
+	return routed to fannedOut
+}
+
+private fun time(dispatch: () -> Unit): Double {
+	repeat(iterations) { dispatch() }
+	val start = System.nanoTime()
+	repeat(iterations) { dispatch() }
+	return (System.nanoTime() - start).toDouble() / iterations
+}
+
+private class CountingListener : FcpAdapter() {
+
+	var peers = 0
+
+	override fun receivedPeer(fcpConnection: FcpConnection, peer: Peer) {
+		peers++
+	}
+
+}
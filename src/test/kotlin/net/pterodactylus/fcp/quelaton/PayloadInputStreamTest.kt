@@ -0,0 +1,65 @@
+package net.pterodactylus.fcp.quelaton
+
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import java.io.*
+import java.util.concurrent.*
+import java.util.concurrent.TimeUnit.*
+
+/**
+ * Unit test for [PayloadInputStream].
+ */
+class PayloadInputStreamTest {
+
+	private val connection = ByteArrayInputStream("Hello\nNext".toByteArray())
+	private val payload = PayloadInputStream(connection, 6)
+	private val executor = Executors.newSingleThreadExecutor()
+
+	@After
+	fun shutdownExecutor() {
+		executor.shutdownNow()
+	}
+
+	@Test
+	fun streamIsReleasedOnceTheLastByteHasBeenRead() {
+		val released = executor.submit { payload.awaitRelease(0, SECONDS) }
+		payload.read(ByteArray(6))
+		released.get(1, SECONDS)
+		assertThat(connection.available(), equalTo(4))
+	}
+
+	@Test
+	fun discardingSkipsTheRemainingPayloadAndReleasesTheStream() {
+		payload.read()
+		val released = executor.submit { payload.awaitRelease(0, SECONDS) }
+		payload.discard()
+		released.get(1, SECONDS)
+		assertThat(String(connection.readBytes()), equalTo("Next"))
+	}
+
+	@Test(expected = IOException::class)
+	fun discardedStreamCanNotBeRead() {
+		payload.discard()
+		payload.read()
+	}
+
+	@Test
+	fun streamThatIsNotReadIsDiscardedAfterTheIdleTimeout() {
+		payload.awaitRelease(50, MILLISECONDS)
+		assertThat(String(connection.readBytes()), equalTo("Next"))
+	}
+
+	@Test
+	fun streamThatIsReadIsNotDiscardedWithinTheIdleTimeout() {
+		val released = executor.submit { payload.awaitRelease(200, MILLISECONDS) }
+		for (index in 1..5) {
+			Thread.sleep(50)
+			payload.read()
+		}
+		assertThat(released.isDone, equalTo(false))
+		assertThat(payload.read().toChar(), equalTo('\n'))
+		released.get(1, SECONDS)
+	}
+
+}
@@ -0,0 +1,114 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import net.pterodactylus.fcp.*
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import org.mockito.Mockito.*
+import java.io.*
+import java.util.concurrent.*
+import java.util.concurrent.TimeUnit.*
+
+/**
+ * Unit test for [PeerMirror].
+ */
+class PeerMirrorTest {
+
+	private val fcpConnection = mock(FcpConnection::class.java)
+	private val listedPeers = LinkedBlockingQueue<ListenableFuture<Collection<Peer>>>()
+	private val peerMirror = PeerMirror { listedPeers.take() }
+
+	@After
+	fun stopPeerMirror() {
+		peerMirror.stop()
+	}
+
+	@Test
+	fun `peers are not found before the mirror has been loaded`() {
+		peerMirror.start(1, HOURS)
+		peerMirror.receivedPeer(fcpConnection, createPeer("id1", "Friend"))
+		assertThat(peerMirror.find("id1"), nullValue())
+	}
+
+	@Test
+	fun `peers are found by identity, name, and address after loading`() {
+		val loaded = peerMirror.start(1, HOURS)
+		val peer = createPeer("id1", "Friend", "1.2.3.4:5678;friend.example.com:5678")
+		listedPeers.add(Futures.immediateFuture(listOf(peer)))
+		loaded.get(1, SECONDS)
+		assertThat(peerMirror.find("id1"), sameInstance(peer))
+		assertThat(peerMirror.find("Friend"), sameInstance(peer))
+		assertThat(peerMirror.find("1.2.3.4:5678"), sameInstance(peer))
+		assertThat(peerMirror.find("friend.example.com:5678"), sameInstance(peer))
+		assertThat(peerMirror.find("Stranger"), nullValue())
+	}
+
+	@Test
+	fun `peer messages update the mirror`() {
+		loadPeers(createPeer("id1", "Friend"))
+		val renamedPeer = createPeer("id1", "Buddy")
+		peerMirror.receivedPeer(fcpConnection, renamedPeer)
+		assertThat(peerMirror.find("id1"), sameInstance(renamedPeer))
+		assertThat(peerMirror.find("Buddy"), sameInstance(renamedPeer))
+		assertThat(peerMirror.find("Friend"), nullValue())
+	}
+
+	@Test
+	fun `removed peers are removed from the mirror`() {
+		loadPeers(createPeer("id1", "Friend"))
+		peerMirror.receivedPeerRemoved(fcpConnection, createPeerRemoved("id1"))
+		assertThat(peerMirror.find("id1"), nullValue())
+		assertThat(peerMirror.find("Friend"), nullValue())
+	}
+
+	@Test
+	fun `peers removed during a resync are not added by the resync`() {
+		val loaded = peerMirror.start(1, HOURS)
+		val listedPeer = SettableFuture.create<Collection<Peer>>()
+		listedPeers.add(listedPeer)
+		while (listedPeers.isNotEmpty()) {
+			Thread.sleep(1)
+		}
+		peerMirror.receivedPeerRemoved(fcpConnection, createPeerRemoved("id1"))
+		listedPeer.set(listOf(createPeer("id1", "Friend")))
+		loaded.get(1, SECONDS)
+		assertThat(peerMirror.find("id1"), nullValue())
+	}
+
+	@Test
+	fun `failed resync is retried with the next resync`() {
+		val loaded = peerMirror.start(10, MILLISECONDS)
+		val peer = createPeer("id1", "Friend")
+		listedPeers.add(Futures.immediateFailedFuture(IOException()))
+		listedPeers.add(Futures.immediateFuture(listOf(peer)))
+		loaded.get(1, SECONDS)
+		assertThat(peerMirror.find("id1"), sameInstance(peer))
+	}
+
+	@Test
+	fun `stopped mirror forgets its peers`() {
+		loadPeers(createPeer("id1", "Friend"))
+		peerMirror.stop()
+		peerMirror.receivedPeer(fcpConnection, createPeer("id2", "Stranger"))
+		assertThat(peerMirror.find("id1"), nullValue())
+		assertThat(peerMirror.find("id2"), nullValue())
+	}
+
+	private fun loadPeers(vararg peers: Peer) {
+		val loaded = peerMirror.start(1, HOURS)
+		listedPeers.add(Futures.immediateFuture(peers.toList()))
+		loaded.get(1, SECONDS)
+	}
+
+	private fun createPeer(identity: String, name: String, physicalUdp: String? = null) =
+			Peer(FcpMessage("Peer").apply {
+				setField("identity", identity)
+				setField("myName", name)
+				physicalUdp?.let { setField("physical.udp", it) }
+			})
+
+	private fun createPeerRemoved(identity: String) =
+			PeerRemoved(FcpMessage("PeerRemoved").apply { setField("Identity", identity) })
+
+}
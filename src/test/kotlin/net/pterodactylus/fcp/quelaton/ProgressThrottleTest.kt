@@ -0,0 +1,87 @@
+package net.pterodactylus.fcp.quelaton
+
+import net.pterodactylus.fcp.*
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import java.util.concurrent.*
+import java.util.concurrent.TimeUnit.*
+import java.util.function.*
+
+/**
+ * Unit test for [ProgressThrottle].
+ */
+class ProgressThrottleTest {
+
+	private val delivered = LinkedBlockingQueue<Int>()
+	private val consumer = Consumer<RequestProgress> { delivered.add(it.succeeded) }
+	private val directExecutor = Executor(Runnable::run)
+
+	@Test
+	fun `every progress is delivered without an interval`() {
+		val progressThrottle = ProgressThrottle(directExecutor, 0, SECONDS, consumer)
+		(1..3).map(this::createSimpleProgress).forEach(progressThrottle::offer)
+		assertThat(delivered.toList(), contains(1, 2, 3))
+	}
+
+	@Test
+	fun `only the latest progress is delivered after the interval`() {
+		val progressThrottle = ProgressThrottle(directExecutor, 50, MILLISECONDS, consumer)
+		(1..3).map(this::createSimpleProgress).forEach(progressThrottle::offer)
+		assertThat(delivered.poll(1, SECONDS), equalTo(1))
+		assertThat(delivered.poll(1, SECONDS), equalTo(3))
+		assertThat(delivered.poll(100, MILLISECONDS), nullValue())
+	}
+
+	@Test
+	fun `flushing delivers the waiting progress right away`() {
+		val progressThrottle = ProgressThrottle(directExecutor, 1, HOURS, consumer)
+		(1..3).map(this::createSimpleProgress).forEach(progressThrottle::offer)
+		progressThrottle.flush()
+		assertThat(delivered.toList(), contains(1, 3))
+	}
+
+	@Test
+	fun `flushing without waiting progress delivers nothing`() {
+		val progressThrottle = ProgressThrottle(directExecutor, 1, HOURS, consumer)
+		progressThrottle.offer(createSimpleProgress(1))
+		progressThrottle.flush()
+		assertThat(delivered.toList(), contains(1))
+	}
+
+	@Test
+	fun `slow consumer does not block offering and only gets the latest progress`() {
+		val executor = Executors.newSingleThreadExecutor()
+		try {
+			val consumerStarted = CountDownLatch(1)
+			val consumerBlocked = CountDownLatch(1)
+			val progressThrottle = ProgressThrottle(executor, 0, SECONDS, Consumer { requestProgress ->
+				consumerStarted.countDown()
+				consumerBlocked.await()
+				consumer.accept(requestProgress)
+			})
+			progressThrottle.offer(createSimpleProgress(1))
+			consumerStarted.await()
+			(2..3).map(this::createSimpleProgress).forEach(progressThrottle::offer)
+			consumerBlocked.countDown()
+			assertThat(delivered.poll(1, SECONDS), equalTo(1))
+			assertThat(delivered.poll(1, SECONDS), equalTo(3))
+			assertThat(delivered.poll(100, MILLISECONDS), nullValue())
+		} finally {
+			executor.shutdown()
+		}
+	}
+
+	private fun createSimpleProgress(succeeded: Int) =
+			SimpleProgress(FcpMessage("SimpleProgress").apply {
+				setField("Total", "10")
+				setField("Required", "10")
+				setField("Failed", "0")
+				setField("FatallyFailed", "0")
+				setField("Succeeded", succeeded.toString())
+				setField("LastProgress", "0")
+				setField("FinalizedTotal", "true")
+				setField("MinSuccessFetchBlocks", "10")
+			})
+
+}
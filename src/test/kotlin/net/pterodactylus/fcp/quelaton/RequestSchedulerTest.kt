@@ -0,0 +1,120 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import net.pterodactylus.fcp.Priority.*
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import java.util.concurrent.TimeUnit.*
+
+/**
+ * Unit test for [RequestScheduler].
+ */
+class RequestSchedulerTest {
+
+	private val weights = mutableMapOf<String, Int>()
+	private val started = mutableListOf<String>()
+
+	private fun RequestScheduler.schedule(name: String, priority: Int = bulk.ordinal, tenant: String = "", size: Long? = null) =
+			SettableFuture.create<Void>().also { schedule(tenant, priority, size, it) { started += name } }
+
+	@Test
+	fun `no more than the maximum number of requests are started`() {
+		val requestScheduler = RequestScheduler(1, 1, HOURS, false) { 1 }
+		val first = requestScheduler.schedule("first")
+		requestScheduler.schedule("second")
+		assertThat(started, contains("first"))
+		first.set(null)
+		assertThat(started, contains("first", "second"))
+	}
+
+	@Test
+	fun `interactive requests are started at once`() {
+		val requestScheduler = RequestScheduler(1, 1, HOURS, false) { 1 }
+		requestScheduler.schedule("bulk")
+		requestScheduler.schedule("interactive", interactive.ordinal)
+		assertThat(started, contains("bulk", "interactive"))
+	}
+
+	@Test
+	fun `requests with a higher priority are started first`() {
+		val requestScheduler = RequestScheduler(1, 1, HOURS, false) { 1 }
+		val blocker = requestScheduler.schedule("blocker")
+		requestScheduler.schedule("prefetch", prefetch.ordinal)
+		requestScheduler.schedule("semiInteractive", semiInteractive.ordinal)
+		blocker.set(null)
+		assertThat(started, contains("blocker", "semiInteractive"))
+	}
+
+	@Test
+	fun `waiting requests are promoted over time`() {
+		val requestScheduler = RequestScheduler(1, 10, MILLISECONDS, false) { 1 }
+		val blocker = requestScheduler.schedule("blocker")
+		requestScheduler.schedule("prefetch", prefetch.ordinal)
+		Thread.sleep(60)
+		requestScheduler.schedule("semiInteractive", semiInteractive.ordinal)
+		blocker.set(null)
+		assertThat(started, contains("blocker", "prefetch"))
+	}
+
+	@Test
+	fun `tenants are served in proportion to their weight`() {
+		weights["a"] = 3
+		val requestScheduler = RequestScheduler(1, 1, HOURS, false) { weights[it] ?: 1 }
+		var running = requestScheduler.schedule("blocker")
+		val futures = mutableMapOf<String, SettableFuture<Void>>()
+		(1..8).forEach { futures["a$it"] = requestScheduler.schedule("a$it", tenant = "a") }
+		(1..8).forEach { futures["b$it"] = requestScheduler.schedule("b$it", tenant = "b") }
+		repeat(8) {
+			running.set(null)
+			running = futures[started.last()]!!
+		}
+		assertThat(started.drop(1).take(8).count { it.startsWith("a") }, equalTo(6))
+	}
+
+	@Test
+	fun `requests of a tenant are started in order`() {
+		val requestScheduler = RequestScheduler(1, 1, HOURS, false) { 1 }
+		val blocker = requestScheduler.schedule("blocker")
+		val first = requestScheduler.schedule("first", tenant = "a")
+		requestScheduler.schedule("second", tenant = "a")
+		blocker.set(null)
+		first.set(null)
+		assertThat(started, contains("blocker", "first", "second"))
+	}
+
+	@Test
+	fun `cancelled waiting requests are never started`() {
+		val requestScheduler = RequestScheduler(1, 1, HOURS, false) { 1 }
+		val blocker = requestScheduler.schedule("blocker")
+		requestScheduler.schedule("cancelled").cancel(false)
+		requestScheduler.schedule("waiting")
+		blocker.set(null)
+		assertThat(started, contains("blocker", "waiting"))
+	}
+
+	@Test
+	fun `smallest requests are started first if the scheduler is size-aware`() {
+		val requestScheduler = RequestScheduler(1, 1, HOURS, true) { 1 }
+		val blocker = requestScheduler.schedule("blocker")
+		requestScheduler.schedule("large", size = 4_000_000_000)
+		requestScheduler.schedule("unknown")
+		val small = requestScheduler.schedule("small", size = 10_000)
+		blocker.set(null)
+		small.set(null)
+		assertThat(started, contains("blocker", "small", "large"))
+	}
+
+	@Test
+	fun `requests that have waited for an aging interval are started before smaller ones`() {
+		val requestScheduler = RequestScheduler(1, 50, MILLISECONDS, true) { 1 }
+		val blocker = requestScheduler.schedule("blocker", priority = semiInteractive.ordinal)
+		requestScheduler.schedule("large", priority = semiInteractive.ordinal, size = 4_000_000_000)
+		Thread.sleep(150)
+		requestScheduler.schedule("small", priority = semiInteractive.ordinal, size = 10_000)
+		Thread.sleep(150)
+		blocker.set(null)
+		assertThat(started, contains("blocker", "large"))
+	}
+
+}
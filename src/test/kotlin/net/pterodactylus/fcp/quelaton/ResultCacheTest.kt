@@ -0,0 +1,105 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import java.io.*
+import java.util.concurrent.*
+import java.util.concurrent.TimeUnit.*
+
+/**
+ * Unit test for [ResultCache].
+ */
+class ResultCacheTest {
+
+	private val resultCache = ResultCache()
+	private var executions = 0
+	private val command = { executions++; Futures.immediateFuture("result$executions") }
+
+	@Test
+	fun `results are not cached if caching is not enabled`() {
+		resultCache.execute(GetNodeCommand::class.java, "key", command).get()
+		resultCache.execute(GetNodeCommand::class.java, "key", command).get()
+		assertThat(executions, equalTo(2))
+	}
+
+	@Test
+	fun `cached result is returned without executing the command`() {
+		resultCache.enable(GetNodeCommand::class.java, 1, MINUTES, 10)
+		resultCache.execute(GetNodeCommand::class.java, "key", command).get()
+		assertThat(resultCache.execute(GetNodeCommand::class.java, "key", command).get(), equalTo("result1"))
+		assertThat(executions, equalTo(1))
+	}
+
+	@Test
+	fun `results are cached by key`() {
+		resultCache.enable(GetNodeCommand::class.java, 1, MINUTES, 10)
+		resultCache.execute(GetNodeCommand::class.java, "key1", command).get()
+		assertThat(resultCache.execute(GetNodeCommand::class.java, "key2", command).get(), equalTo("result2"))
+	}
+
+	@Test
+	fun `failures are not cached`() {
+		resultCache.enable(GetNodeCommand::class.java, 1, MINUTES, 10)
+		resultCache.execute(GetNodeCommand::class.java, "key") { Futures.immediateFailedFuture<String>(IOException()) }
+		assertThat(resultCache.execute(GetNodeCommand::class.java, "key", command).get(), equalTo("result1"))
+	}
+
+	@Test
+	fun `expired results are not returned`() {
+		resultCache.enable(GetNodeCommand::class.java, 1, NANOSECONDS, 10)
+		resultCache.execute(GetNodeCommand::class.java, "key", command).get()
+		Thread.sleep(1)
+		assertThat(resultCache.execute(GetNodeCommand::class.java, "key", command).get(), equalTo("result2"))
+	}
+
+	@Test
+	fun `successful change invalidates the cached results`() {
+		resultCache.enable(GetNodeCommand::class.java, 1, MINUTES, 10)
+		resultCache.execute(GetNodeCommand::class.java, "key", command).get()
+		resultCache.invalidateOnSuccess(Futures.immediateFuture(true), GetNodeCommand::class.java).get()
+		assertThat(resultCache.execute(GetNodeCommand::class.java, "key", command).get(), equalTo("result2"))
+	}
+
+	@Test
+	fun `failed change does not invalidate the cached results`() {
+		resultCache.enable(GetNodeCommand::class.java, 1, MINUTES, 10)
+		resultCache.execute(GetNodeCommand::class.java, "key", command).get()
+		resultCache.invalidateOnSuccess(Futures.immediateFailedFuture<Boolean>(IOException()), GetNodeCommand::class.java)
+		assertThat(resultCache.execute(GetNodeCommand::class.java, "key", command).get(), equalTo("result1"))
+	}
+
+	@Test
+	fun `result of a command started before an invalidation is not cached`() {
+		resultCache.enable(GetNodeCommand::class.java, 1, MINUTES, 10)
+		val pendingResult = SettableFuture.create<String>()
+		resultCache.execute(GetNodeCommand::class.java, "key") { pendingResult }
+		resultCache.invalidate(GetNodeCommand::class.java)
+		pendingResult.set("stale")
+		assertThat(resultCache.execute(GetNodeCommand::class.java, "key", command).get(), equalTo("result1"))
+	}
+
+	@Test
+	fun `command started after an invalidation does not join a command started before it`() {
+		resultCache.enable(GetNodeCommand::class.java, 1, MINUTES, 10)
+		val singleFlight = SingleFlight()
+		val staleResult = SettableFuture.create<String>()
+		val staleCaller = resultCache.execute(GetNodeCommand::class.java, "key", singleFlight) { staleResult }
+		resultCache.invalidate(GetNodeCommand::class.java)
+		val freshCaller = resultCache.execute(GetNodeCommand::class.java, "key", singleFlight, command)
+		staleResult.set("stale")
+		assertThat(staleCaller.get(), equalTo("stale"))
+		assertThat(freshCaller.get(), equalTo("result1"))
+		assertThat(resultCache.execute(GetNodeCommand::class.java, "key", singleFlight, command).get(), equalTo("result1"))
+	}
+
+	@Test
+	fun `cancelling the returned future cancels the command`() {
+		resultCache.enable(GetNodeCommand::class.java, 1, MINUTES, 10)
+		val pendingResult = SettableFuture.create<String>()
+		resultCache.execute(GetNodeCommand::class.java, "key") { pendingResult }.cancel(false)
+		assertThat(pendingResult.isCancelled, equalTo(true))
+	}
+
+}
@@ -0,0 +1,81 @@
+package net.pterodactylus.fcp.quelaton
+
+import com.google.common.util.concurrent.*
+import org.hamcrest.MatcherAssert.*
+import org.hamcrest.Matchers.*
+import org.junit.*
+import java.io.*
+import java.util.concurrent.*
+
+/**
+ * Unit test for [SingleFlight].
+ */
+class SingleFlightTest {
+
+	private val singleFlight = SingleFlight()
+	private var executions = 0
+	private val sharedFuture = SettableFuture.create<String>()
+	private val command = { executions++; sharedFuture }
+
+	@Test
+	fun `concurrent commands with the same key share one execution`() {
+		val first = singleFlight.execute("key", command)
+		val second = singleFlight.execute("key", command)
+		sharedFuture.set("result")
+		assertThat(executions, equalTo(1))
+		assertThat(first.get(), equalTo("result"))
+		assertThat(second.get(), equalTo("result"))
+	}
+
+	@Test
+	fun `every caller receives its own copy of a collection result`() {
+		val sharedList = SettableFuture.create<MutableList<String>>()
+		val first = singleFlight.execute("key") { sharedList }
+		val second = singleFlight.execute("key") { sharedList }
+		sharedList.set(mutableListOf("a", "b"))
+		first.get().add("c")
+		assertThat(first.get(), contains("a", "b", "c"))
+		assertThat(second.get(), contains("a", "b"))
+	}
+
+	@Test
+	fun `commands with different keys are executed separately`() {
+		singleFlight.execute("key1", command)
+		singleFlight.execute("key2", command)
+		assertThat(executions, equalTo(2))
+	}
+
+	@Test
+	fun `command is executed again after the previous execution has finished`() {
+		singleFlight.execute("key", command)
+		sharedFuture.set("result")
+		singleFlight.execute("key", command)
+		assertThat(executions, equalTo(2))
+	}
+
+	@Test
+	fun `failure is shared by all callers`() {
+		val first = singleFlight.execute("key", command)
+		val second = singleFlight.execute("key", command)
+		sharedFuture.setException(IOException())
+		listOf(first, second).forEach { future ->
+			try {
+				future.get()
+				Assert.fail()
+			} catch (e: ExecutionException) {
+				assertThat(e.cause, instanceOf(IOException::class.java))
+			}
+		}
+	}
+
+	@Test
+	fun `cancelling one caller does not affect the other callers`() {
+		val first = singleFlight.execute("key", command)
+		val second = singleFlight.execute("key", command)
+		first.cancel(false)
+		sharedFuture.set("result")
+		assertThat(sharedFuture.isCancelled, equalTo(false))
+		assertThat(second.get(), equalTo("result"))
+	}
+
+}